@@ -24,7 +24,8 @@ import java.util.List;
 
 /**
  * Base seed generator class providing some of the general functionality used by specific seed
- * generators.
+ * generators. The plain text keywords of derived classes are normalized (see
+ * {@link KeywordNormalizer}), so that invalid keywords and duplicates are dropped.
  */
 public abstract class AbstractSeedGenerator extends AdditionalInfoHolder implements SeedGenerator {
   protected final List<KeywordMatchType> matchTypes;
@@ -58,7 +59,7 @@ public abstract class AbstractSeedGenerator extends AdditionalInfoHolder impleme
 
   @Override
   public KeywordCollection generate() throws KeywordOptimizerException {
-    Collection<String> keywords = getKeywords();
+    Collection<String> keywords = KeywordNormalizer.normalize(getKeywords());
 
     KeywordCollection keywordCollection = new KeywordCollection(getMaxCpc());
     keywordCollection.addAdditionalCriteria(getAdditionalCriteria());
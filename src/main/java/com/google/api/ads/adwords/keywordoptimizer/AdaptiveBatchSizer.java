@@ -0,0 +1,131 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tunes the number of keywords sent per request at runtime, following an AIMD (additive increase,
+ * multiplicative decrease) scheme: the batch size grows by a small step whenever a request is
+ * answered within the target latency and is halved whenever a request is too slow, times out or
+ * is rejected for being too large. The batch size always stays between a minimum and a maximum,
+ * setting both to the same value turns off the adaptation.
+ *
+ * <p>Feedback is always reported along with the batch size a request was sent with, so that
+ * requests still in flight from before a change do not shrink or grow the batch size a second time
+ * for the same reason.
+ */
+public class AdaptiveBatchSizer {
+  private static final Logger logger = LoggerFactory.getLogger(AdaptiveBatchSizer.class);
+
+  private final int minBatchSize;
+  private final int maxBatchSize;
+  private final int increment;
+  private final long targetLatencyMillis;
+  private int batchSize;
+
+  /**
+   * Creates a new {@link AdaptiveBatchSizer}. The batch size grows in steps of a tenth of the
+   * initial batch size.
+   *
+   * @param initialBatchSize the batch size to start with
+   * @param minBatchSize the lower limit for the batch size
+   * @param maxBatchSize the upper limit for the batch size
+   * @param targetLatencyMillis requests taking longer than this (in milliseconds) shrink the
+   *        batch size
+   */
+  public AdaptiveBatchSizer(
+      int initialBatchSize, int minBatchSize, int maxBatchSize, long targetLatencyMillis) {
+    if (minBatchSize < 1 || minBatchSize > maxBatchSize) {
+      throw new IllegalArgumentException("Invalid batch size limits: min " + minBatchSize
+          + ", max " + maxBatchSize);
+    }
+
+    this.minBatchSize = minBatchSize;
+    this.maxBatchSize = maxBatchSize;
+    this.targetLatencyMillis = targetLatencyMillis;
+    this.batchSize = Math.max(minBatchSize, Math.min(maxBatchSize, initialBatchSize));
+    this.increment = Math.max(1, batchSize / 10);
+  }
+
+  /**
+   * Creates a new {@link AdaptiveBatchSizer} that always uses the same batch size.
+   *
+   * @param batchSize the fixed batch size
+   * @return the batch sizer
+   */
+  public static AdaptiveBatchSizer fixed(int batchSize) {
+    return new AdaptiveBatchSizer(batchSize, batchSize, batchSize, Long.MAX_VALUE);
+  }
+
+  /**
+   * Returns the number of keywords to send in the next request.
+   */
+  public synchronized int getBatchSize() {
+    return batchSize;
+  }
+
+  /**
+   * Returns the lower limit for the batch size.
+   */
+  public int getMinBatchSize() {
+    return minBatchSize;
+  }
+
+  /**
+   * Reports a successful request. The batch size only grows for requests that were actually full,
+   * as smaller requests (e.g. the last batch of a collection) say nothing about whether larger
+   * ones would work.
+   *
+   * @param sentBatchSize the batch size at the time the request was sent
+   * @param requestSize the number of keywords the request actually contained
+   * @param latencyMillis the time it took to answer the request (in milliseconds)
+   */
+  public synchronized void onSuccess(int sentBatchSize, int requestSize, long latencyMillis) {
+    if (latencyMillis > targetLatencyMillis) {
+      decrease(sentBatchSize, "took " + latencyMillis + "ms");
+    } else if (requestSize == batchSize && sentBatchSize == batchSize
+        && batchSize < maxBatchSize) {
+      batchSize = Math.min(maxBatchSize, batchSize + increment);
+      logger.debug("Increased batch size to " + batchSize);
+    }
+  }
+
+  /**
+   * Reports a request that timed out or was rejected for being too large.
+   *
+   * @param sentBatchSize the batch size at the time the request was sent
+   */
+  public synchronized void onOverload(int sentBatchSize) {
+    decrease(sentBatchSize, "failed");
+  }
+
+  /**
+   * Halves the batch size, unless it was already decreased since the request was sent.
+   *
+   * @param sentBatchSize the batch size at the time the request was sent
+   * @param reason description of what happened to the request (for logging)
+   */
+  private void decrease(int sentBatchSize, String reason) {
+    if (sentBatchSize > batchSize || batchSize == minBatchSize) {
+      return;
+    }
+
+    batchSize = Math.max(minBatchSize, batchSize / 2);
+    logger.info("Request with " + sentBatchSize + " keywords " + reason
+        + ", decreased batch size to " + batchSize);
+  }
+}
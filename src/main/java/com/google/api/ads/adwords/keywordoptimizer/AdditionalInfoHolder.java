@@ -19,8 +19,8 @@ import com.google.api.ads.adwords.axis.v201509.cm.Language;
 import com.google.api.ads.adwords.axis.v201509.cm.Location;
 import com.google.api.ads.adwords.axis.v201509.cm.Money;
 import com.google.api.ads.adwords.axis.v201509.o.TrafficEstimatorService;
+import com.google.common.collect.ImmutableList;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -30,37 +30,39 @@ import javax.annotation.Nullable;
 /**
  * Base class for holding additional information for evaluating keywords. This contains a list of
  * additional criteria (location, language, ...) as well as a maximum cpc.
+ *
+ * <p>The criteria list is immutable and replaced as a whole on every change (copy-on-write), so
+ * copies of an info holder share it (as well as the max cpc and the estimation context derived
+ * from both) until one of them is changed. Creating copies is therefore cheap.
  */
 public class AdditionalInfoHolder {
-  private final List<Criterion> additionalCriteria;
+  private ImmutableList<Criterion> additionalCriteria;
   private Money maxCpc;
 
+  // Fingerprint of criteria and max cpc, calculated lazily (see EstimateCacheKey#getContext).
+  private String context;
+
   /**
    * Creates a new information holder using the given max cpc.
    * 
    * @param maxCpc the maximum cpc (cost per click) as a {@link Money} object
    */
   public AdditionalInfoHolder(@Nullable Money maxCpc) {
-    additionalCriteria = new ArrayList<Criterion>();
+    additionalCriteria = ImmutableList.of();
     this.maxCpc = maxCpc;
   }
 
   /**
-   * Creates a new information holder based on the settings of a given one. This clones all
+   * Creates a new information holder based on the settings of a given one. This takes over all
    * "additional" settings (additional criteria, max cpc), but not the ones defined in any 
-   * subclasses.
+   * subclasses. The settings are shared, not copied (see above).
    * 
    * @param other the prototype info holder to take the data from
    */
   public AdditionalInfoHolder(AdditionalInfoHolder other) {
-    List<Criterion> otherCriteria = other.getAdditionalCriteria();
-    Money otherMaxCpc = other.getMaxCpc();
-    
-    additionalCriteria = new ArrayList<Criterion>(otherCriteria.size());
-    addAdditionalCriteria(otherCriteria);
-    maxCpc =
-        otherMaxCpc == null
-            ? null : new Money(otherMaxCpc.getComparableValueType(), otherMaxCpc.getMicroAmount());
+    additionalCriteria = other.additionalCriteria;
+    maxCpc = other.maxCpc;
+    context = other.context;
   }
 
   /**
@@ -68,7 +70,7 @@ public class AdditionalInfoHolder {
    * estimates / evaluations.
    */
   public List<Criterion> getAdditionalCriteria() {
-    return Collections.unmodifiableList(additionalCriteria);
+    return additionalCriteria;
   }
 
   /**
@@ -79,7 +81,7 @@ public class AdditionalInfoHolder {
    * @param criterion an additional criterion
    */
   public void addAdditionalCriterion(Criterion criterion) {
-    additionalCriteria.add(criterion);
+    addAdditionalCriteria(Collections.singletonList(criterion));
   }
 
   /**
@@ -90,7 +92,9 @@ public class AdditionalInfoHolder {
    * @param criteria a list of additional criteria
    */
   public void addAdditionalCriteria(Collection<Criterion> criteria) {
-    additionalCriteria.addAll(criteria);
+    additionalCriteria = ImmutableList.<Criterion>builder()
+        .addAll(additionalCriteria).addAll(criteria).build();
+    context = null;
   }
 
   /**
@@ -124,6 +128,7 @@ public class AdditionalInfoHolder {
    */
   public void setMaxCpc(Money maxCpc) {
     this.maxCpc = maxCpc;
+    context = null;
   }
 
   /**
@@ -132,4 +137,18 @@ public class AdditionalInfoHolder {
   public Money getMaxCpc() {
     return maxCpc;
   }
+
+  /**
+   * Returns the fingerprint of max cpc and additional criteria (see
+   * {@link EstimateCacheKey#getContext(AdditionalInfoHolder)}), calculated only once for all
+   * copies sharing the same settings.
+   */
+  String getEstimationContext() {
+    String current = context;
+    if (current == null) {
+      current = EstimateCacheKey.calculateContext(this);
+      context = current;
+    }
+    return current;
+  }
 }
@@ -0,0 +1,243 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.cm.ApiError;
+import com.google.api.ads.adwords.axis.v201509.cm.ApiException;
+import com.google.api.ads.adwords.axis.v201509.cm.RateExceededError;
+import com.google.common.util.concurrent.RateLimiter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.rmi.RemoteException;
+import java.util.Random;
+
+/**
+ * Limits the rate of calls to an AdWords API service (token bucket), so that parallel requests
+ * stay below the quota instead of running into RATE_EXCEEDED errors. If such an error occurs
+ * anyway, the call is retried after an exponential backoff with jitter (or the time the error
+ * asks for, if longer). This pause applies to all callers sharing the limiter and the rate is
+ * lowered a little. After a run of successful calls, the rate is raised again in small steps (up
+ * to the configured rate), so that throughput settles just below the quota instead of staying at
+ * the lowest rate for the rest of the run.
+ *
+ * <p>Limiters are typically shared per service and client customer id (see
+ * {@link OptimizationContext#getRateLimiter(Class)}).
+ */
+public class ApiRateLimiter {
+  private static final Logger logger = LoggerFactory.getLogger(ApiRateLimiter.class);
+
+  // Factor by which the rate is lowered after a rate exceeded error.
+  private static final double RATE_DECREASE = 0.9;
+
+  // The rate is never lowered below this fraction of the configured rate.
+  private static final double MIN_RATE_FRACTION = 0.1;
+
+  // Number of successful calls in a row after which the rate is raised again.
+  private static final int RECOVERY_SUCCESSES = 20;
+
+  // Fraction of the configured rate by which the rate is raised again.
+  private static final double RATE_INCREASE_FRACTION = 0.05;
+
+  // Default backoff after the first rate exceeded error (in milliseconds).
+  public static final long DEFAULT_BASE_BACKOFF = 1000;
+
+  /**
+   * A single call to an AdWords API service.
+   *
+   * @param <T> the result type of the call
+   */
+  public interface ApiCall<T> {
+    /**
+     * Calls the service.
+     *
+     * @return the result of the call
+     * @throws ApiException in case of an error reported by the service
+     * @throws RemoteException in case of an error connecting to the service
+     */
+    T call() throws ApiException, RemoteException;
+  }
+
+  private final String name;
+  private final RateLimiter rateLimiter;
+  private final double minRate;
+  private final double maxRate;
+  private final int maxRetries;
+  private final long baseBackoffMillis;
+  private final Random random;
+
+  // Time until which all calls are paused after a rate exceeded error.
+  private long pausedUntil;
+
+  // Successful calls since the rate was last changed.
+  private int successCount;
+
+  /**
+   * Creates a new {@link ApiRateLimiter}.
+   *
+   * @param name name of the limited service (for logging)
+   * @param permitsPerSecond maximum number of calls per second, 0 or less for no limit
+   * @param maxRetries maximum number of retries after rate exceeded errors
+   * @param baseBackoffMillis backoff after the first rate exceeded error (in milliseconds), which
+   *        doubles with every further retry
+   */
+  public ApiRateLimiter(
+      String name, double permitsPerSecond, int maxRetries, long baseBackoffMillis) {
+    this.name = name;
+    this.rateLimiter = permitsPerSecond > 0 ? RateLimiter.create(permitsPerSecond) : null;
+    this.minRate = permitsPerSecond * MIN_RATE_FRACTION;
+    this.maxRate = permitsPerSecond;
+    this.maxRetries = maxRetries;
+    this.baseBackoffMillis = baseBackoffMillis;
+    this.random = new Random();
+  }
+
+  /**
+   * Creates a new {@link ApiRateLimiter} that neither limits the rate of calls nor retries calls
+   * after rate exceeded errors.
+   *
+   * @param name name of the limited service (for logging)
+   * @return the rate limiter
+   */
+  public static ApiRateLimiter unlimited(String name) {
+    return new ApiRateLimiter(name, 0, 0, DEFAULT_BASE_BACKOFF);
+  }
+
+  /**
+   * Performs a call once the rate allows it, retrying it after rate exceeded errors.
+   *
+   * @param call the call to the service
+   * @return the result of the call
+   * @throws ApiException in case of an error reported by the service (after all retries)
+   * @throws RemoteException in case of an error connecting to the service
+   * @throws KeywordOptimizerException in case the thread was interrupted while waiting
+   */
+  public <T> T call(ApiCall<T> call)
+      throws ApiException, RemoteException, KeywordOptimizerException {
+    for (int attempt = 0; ; attempt++) {
+      waitForPause();
+      if (rateLimiter != null) {
+        rateLimiter.acquire();
+      }
+
+      try {
+        T result = call.call();
+        if (rateLimiter != null) {
+          onSuccess();
+        }
+        return result;
+      } catch (ApiException e) {
+        RateExceededError error = getRateExceededError(e);
+        if (error == null || attempt >= maxRetries) {
+          throw e;
+        }
+        pause(error, attempt);
+      }
+    }
+  }
+
+  /**
+   * Returns the current rate limit in calls per second (0 for no limit).
+   */
+  public double getRate() {
+    return rateLimiter != null ? rateLimiter.getRate() : 0;
+  }
+
+  /**
+   * Pauses all calls after a rate exceeded error and lowers the rate.
+   *
+   * @param error the rate exceeded error
+   * @param attempt number of the failed attempt (starting at 0)
+   */
+  private synchronized void pause(RateExceededError error, int attempt) {
+    long backoff = baseBackoffMillis << Math.min(attempt, 16);
+    if (error.getRetryAfterSeconds() != null) {
+      backoff = Math.max(backoff, error.getRetryAfterSeconds() * 1000L);
+    }
+    // Jitter between 100% and 150%, so that callers don't all come back at the same time.
+    backoff += (long) (backoff * random.nextDouble() / 2);
+
+    pausedUntil = Math.max(pausedUntil, System.currentTimeMillis() + backoff);
+
+    if (rateLimiter != null) {
+      rateLimiter.setRate(Math.max(minRate, rateLimiter.getRate() * RATE_DECREASE));
+      successCount = 0;
+    }
+
+    logger.info("Rate exceeded for " + name + " (" + error.getRateName() + "), pausing for "
+        + backoff + "ms, continuing at " + String.format("%.2f", getRate())
+        + " calls per second");
+  }
+
+  /**
+   * Raises the rate again (up to the configured rate) after a run of successful calls.
+   */
+  private synchronized void onSuccess() {
+    double rate = rateLimiter.getRate();
+    if (rate >= maxRate || ++successCount < RECOVERY_SUCCESSES) {
+      return;
+    }
+
+    successCount = 0;
+    rateLimiter.setRate(Math.min(maxRate, rate + maxRate * RATE_INCREASE_FRACTION));
+    logger.debug("Raised rate for " + name + " to " + String.format("%.2f", getRate())
+        + " calls per second");
+  }
+
+  /**
+   * Waits until a pause after a rate exceeded error is over. As other callers may extend the
+   * pause in the meantime, the end of the pause is checked again after waiting.
+   *
+   * @throws KeywordOptimizerException in case the thread was interrupted while waiting
+   */
+  private void waitForPause() throws KeywordOptimizerException {
+    while (true) {
+      long waitTime;
+      synchronized (this) {
+        waitTime = pausedUntil - System.currentTimeMillis();
+      }
+      if (waitTime <= 0) {
+        return;
+      }
+
+      try {
+        Thread.sleep(waitTime);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new KeywordOptimizerException("Interrupted while waiting for the rate limit", e);
+      }
+    }
+  }
+
+  /**
+   * Returns the rate exceeded error contained in the given exception, if there is any.
+   *
+   * @param e the exception thrown by the service
+   * @return the rate exceeded error or <code>null</code> if there is none
+   */
+  private static RateExceededError getRateExceededError(ApiException e) {
+    if (e.getErrors() == null) {
+      return null;
+    }
+
+    for (ApiError error : e.getErrors()) {
+      if (error instanceof RateExceededError) {
+        return (RateExceededError) error;
+      }
+    }
+    return null;
+  }
+}
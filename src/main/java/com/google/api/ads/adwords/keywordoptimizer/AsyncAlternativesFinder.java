@@ -0,0 +1,35 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Non-blocking counterpart of an {@link AlternativesFinder}. Instead of waiting for the keyword
+ * alternatives, it returns a future right away, so that callers can do other work while the
+ * alternatives are being retrieved. Use an {@link AsyncAlternativesFinderAdapter} to turn any
+ * blocking {@link AlternativesFinder} into an {@link AsyncAlternativesFinder}.
+ */
+public interface AsyncAlternativesFinder {
+  /**
+   * Derive a list of new keywords from an existing collection without blocking.
+   *
+   * @param keywords sample {@link KeywordCollection}
+   * @return a future for the alternatives / derived {@link KeywordCollection}, which fails with a
+   *         {@link KeywordOptimizerException} in case of an error while finding keyword
+   *         alternatives
+   */
+  public ListenableFuture<KeywordCollection> findAsync(KeywordCollection keywords);
+}
@@ -0,0 +1,57 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Turns a blocking {@link AlternativesFinder} into an {@link AsyncAlternativesFinder} by running
+ * its {@link AlternativesFinder#find(KeywordCollection)} method on a given executor. The adapter
+ * itself is an {@link AlternativesFinder} as well, which simply passes on blocking calls.
+ */
+public class AsyncAlternativesFinderAdapter implements AsyncAlternativesFinder, AlternativesFinder {
+  private final AlternativesFinder alternativesFinder;
+  private final ListeningExecutorService executor;
+
+  /**
+   * Creates a new {@link AsyncAlternativesFinderAdapter}.
+   *
+   * @param alternativesFinder the blocking {@link AlternativesFinder} to be wrapped
+   * @param executor the executor to run the blocking calls on
+   */
+  public AsyncAlternativesFinderAdapter(
+      AlternativesFinder alternativesFinder, ListeningExecutorService executor) {
+    this.alternativesFinder = alternativesFinder;
+    this.executor = executor;
+  }
+
+  @Override
+  public ListenableFuture<KeywordCollection> findAsync(final KeywordCollection keywords) {
+    return executor.submit(new Callable<KeywordCollection>() {
+      @Override
+      public KeywordCollection call() throws KeywordOptimizerException {
+        return alternativesFinder.find(keywords);
+      }
+    });
+  }
+
+  @Override
+  public KeywordCollection find(KeywordCollection keywords) throws KeywordOptimizerException {
+    return alternativesFinder.find(keywords);
+  }
+}
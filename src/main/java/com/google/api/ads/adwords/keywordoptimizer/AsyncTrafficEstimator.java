@@ -0,0 +1,37 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Non-blocking counterpart of a {@link TrafficEstimator}. Instead of waiting for the estimates, it
+ * returns a future right away, so that callers can do other work (for instance send other
+ * requests) while the estimates are being retrieved. Use an {@link AsyncTrafficEstimatorAdapter}
+ * to turn any blocking {@link TrafficEstimator} into an {@link AsyncTrafficEstimator}.
+ */
+public interface AsyncTrafficEstimator {
+  /**
+   * Estimates the traffic for all given keywords (bulk requests) without blocking. The returned
+   * future holds a copy of the given {@link KeywordCollection} with new {@link KeywordInfo}s that
+   * contain the keyword as well as the obtained {@link TrafficEstimate}.
+   *
+   * @param keywords the {@link KeywordCollection} to be evaluated
+   * @return a future for the {@link KeywordCollection} with {@link TrafficEstimate}s set, which
+   *         fails with a {@link KeywordOptimizerException} in case of an error estimating the
+   *         keyword traffic
+   */
+  public ListenableFuture<KeywordCollection> estimateAsync(KeywordCollection keywords);
+}
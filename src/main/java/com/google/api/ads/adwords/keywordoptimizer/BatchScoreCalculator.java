@@ -0,0 +1,34 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+/**
+ * A {@link ScoreCalculator} that can score all estimates of a {@link ColumnarKeywordCollection} in
+ * a single call, reading the statistics columns directly. This avoids the per-estimate overhead
+ * when evaluating large populations. Use a {@link BatchScoreCalculatorAdapter} to score columnar
+ * collections with any other {@link ScoreCalculator}.
+ */
+public interface BatchScoreCalculator extends ScoreCalculator {
+  /**
+   * Calculates the scores for the estimates of all keywords in the given collection. Scores must be
+   * the same as the ones {@link #calculate(TrafficEstimate)} returns for the single estimates.
+   *
+   * @param keywords the keywords with the {@link TrafficEstimate}s to be evaluated
+   * @param scores the array to write the scores to, by row (at least as long as the collection)
+   * @throws KeywordOptimizerException in case of a problem calculating a score
+   */
+  public void calculate(ColumnarKeywordCollection keywords, double[] scores)
+      throws KeywordOptimizerException;
+}
@@ -0,0 +1,45 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+/**
+ * Turns any {@link ScoreCalculator} into a {@link BatchScoreCalculator} by scoring the estimates
+ * of a collection one after another.
+ */
+public class BatchScoreCalculatorAdapter implements BatchScoreCalculator {
+  private final ScoreCalculator scoreCalculator;
+
+  /**
+   * Creates a new {@link BatchScoreCalculatorAdapter}.
+   *
+   * @param scoreCalculator the {@link ScoreCalculator} to be wrapped
+   */
+  public BatchScoreCalculatorAdapter(ScoreCalculator scoreCalculator) {
+    this.scoreCalculator = scoreCalculator;
+  }
+
+  @Override
+  public void calculate(ColumnarKeywordCollection keywords, double[] scores)
+      throws KeywordOptimizerException {
+    for (int row = 0; row < keywords.size(); row++) {
+      scores[row] = scoreCalculator.calculate(keywords.getEstimate(row));
+    }
+  }
+
+  @Override
+  public double calculate(TrafficEstimate estimate) throws KeywordOptimizerException {
+    return scoreCalculator.calculate(estimate);
+  }
+}
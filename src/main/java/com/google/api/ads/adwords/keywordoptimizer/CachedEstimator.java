@@ -15,63 +15,194 @@
 package com.google.api.ads.adwords.keywordoptimizer;
 
 import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This {@link TrafficEstimator} uses an internal cache for storing {@link TrafficEstimate}s that
  * have been received already. It's basically a decorator around another {@link TrafficEstimator} in
  * order to increase efficiency.
+ *
+ * <p>Entries are stored by {@link EstimateCacheKey}, so estimates obtained for a different max cpc
+ * or different additional criteria are never returned. The cache is bounded in size (least
+ * recently used entries are evicted first), entries can optionally expire after a given time and
+ * it can safely be shared between threads.
+ *
+ * <p>Keywords for which the nested estimator returns no estimate or an estimate without any data
+ * are never part of the result (an estimate without data cannot be scored). They are kept in a
+ * {@link NegativeEstimateCache} (with a separate expiration time), instead of being estimated
+ * again and again, so they are consistently left out of every result until they expire.
  */
 public class CachedEstimator implements TrafficEstimator {
   private static final Logger logger = LoggerFactory.getLogger(CachedEstimator.class);
 
-  // Map storing traffic estimates by keyword.
-  private final Map<Keyword, TrafficEstimate> cache;
+  // Default maximum number of estimates kept in the cache.
+  public static final long DEFAULT_MAX_SIZE = 100000;
+
+  // Default time (in minutes) after which keywords without an estimate are estimated again.
+  public static final long DEFAULT_NEGATIVE_EXPIRE_AFTER_MINUTES = 60;
+
+  // Number of independently locked segments of the cache.
+  private static final int CONCURRENCY_LEVEL = 8;
+
+  // Cache storing traffic estimates by keyword and estimation context.
+  private final Cache<EstimateCacheKey, TrafficEstimate> cache;
+  private final NegativeEstimateCache negativeCache;
   private final TrafficEstimator estimator;
 
   /**
-   * Creates a new {@link CachedEstimator} around an existing {@link TrafficEstimator}.
+   * Creates a new {@link CachedEstimator} around an existing {@link TrafficEstimator}, using a
+   * default size and no expiration of entries.
    * 
    * @param estimator the nested {@link TrafficEstimator}, which will be used
    *                  whenever no entry is found in the cache
    */
   public CachedEstimator(TrafficEstimator estimator) {
+    this(estimator, DEFAULT_MAX_SIZE, 0);
+  }
+
+  /**
+   * Creates a new {@link CachedEstimator} around an existing {@link TrafficEstimator} and takes the
+   * cache settings from the properties file.
+   *
+   * @param estimator the nested {@link TrafficEstimator}, which will be used
+   *                  whenever no entry is found in the cache
+   * @param context holding shared objects during the optimization process
+   */
+  public CachedEstimator(TrafficEstimator estimator, OptimizationContext context) {
+    this(estimator,
+        context.getConfiguration().getLong(
+            KeywordOptimizerProperty.EstimateCacheMaxSize.getName(), DEFAULT_MAX_SIZE),
+        context.getConfiguration().getLong(
+            KeywordOptimizerProperty.EstimateCacheExpireAfterMinutes.getName(), 0),
+        context.getConfiguration().getLong(
+            KeywordOptimizerProperty.EstimateCacheNegativeExpireAfterMinutes.getName(),
+            DEFAULT_NEGATIVE_EXPIRE_AFTER_MINUTES));
+  }
+
+  /**
+   * Creates a new {@link CachedEstimator} around an existing {@link TrafficEstimator}.
+   *
+   * @param estimator the nested {@link TrafficEstimator}, which will be used
+   *                  whenever no entry is found in the cache
+   * @param maxSize maximum number of estimates to keep in the cache
+   * @param expireAfterMinutes time after which cached estimates are retrieved again (0 for no
+   *                           expiration)
+   */
+  public CachedEstimator(TrafficEstimator estimator, long maxSize, long expireAfterMinutes) {
+    this(estimator, maxSize, expireAfterMinutes, DEFAULT_NEGATIVE_EXPIRE_AFTER_MINUTES);
+  }
+
+  /**
+   * Creates a new {@link CachedEstimator} around an existing {@link TrafficEstimator}.
+   *
+   * @param estimator the nested {@link TrafficEstimator}, which will be used
+   *                  whenever no entry is found in the cache
+   * @param maxSize maximum number of estimates (and of keywords without estimate) to keep
+   * @param expireAfterMinutes time after which cached estimates are retrieved again (0 for no
+   *                           expiration)
+   * @param negativeExpireAfterMinutes time after which keywords without an estimate are estimated
+   *                                   again (0 for no expiration)
+   */
+  public CachedEstimator(TrafficEstimator estimator, long maxSize, long expireAfterMinutes,
+      long negativeExpireAfterMinutes) {
     this.estimator = estimator;
-    cache = new HashMap<Keyword, TrafficEstimate>();
+    this.negativeCache = new NegativeEstimateCache(maxSize, negativeExpireAfterMinutes);
+
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .concurrencyLevel(CONCURRENCY_LEVEL)
+        .recordStats();
+    if (expireAfterMinutes > 0) {
+      builder.expireAfterWrite(expireAfterMinutes, TimeUnit.MINUTES);
+    }
+    cache = builder.build();
   }
 
   @Override
   public KeywordCollection estimate(KeywordCollection keywords) throws KeywordOptimizerException {
     KeywordCollection cachedEstimates = new KeywordCollection(keywords);
     KeywordCollection retrieveKeywords = new KeywordCollection(keywords);
+    int skipped = 0;
+
+    // Keys are only calculated once per keyword, as they are needed again for storing the results.
+    String context = EstimateCacheKey.getContext(keywords);
+    Map<KeywordKey, EstimateCacheKey> keys = new HashMap<KeywordKey, EstimateCacheKey>();
 
     // Check if there are any keywords already in the cache.
-    for (Keyword keyword : keywords.getKeywords()) {
-      TrafficEstimate cachedEstimate = cache.get(keyword);
+    for (KeywordInfo keywordInfo : keywords) {
+      Keyword keyword = keywordInfo.getKeyword();
+      EstimateCacheKey key = new EstimateCacheKey(keyword, context);
+      TrafficEstimate cachedEstimate = cache.getIfPresent(key);
 
       // Check if there is a cached entry related to that key which is equal to the keyword.
       if (cachedEstimate != null) {
         cachedEstimates.add(new KeywordInfo(keyword, cachedEstimate, null));
+      } else if (negativeCache.contains(key)) {
+        skipped++;
       } else {
+        keys.put(keywordInfo.getKeywordKey(), key);
         retrieveKeywords.add(new KeywordInfo(keyword, null, null));
       }
     }
 
+    logger.info("Estimating " + keywords.size() + " keywords (" + cachedEstimates.size()
+        + " cached, " + skipped + " known to have no estimate, " + retrieveKeywords.size()
+        + " to be retrieved)");
+
     // Actually retrieve stats for all keywords that are not cached.
-    KeywordCollection estimates = estimator.estimate(retrieveKeywords);
-    for (KeywordInfo estimate : estimates) {
-      cache.put(estimate.getKeyword(), estimate.getEstimate());
-      estimates.add(estimate);
+    if (retrieveKeywords.size() > 0) {
+      KeywordCollection estimates = estimator.estimate(retrieveKeywords);
+      for (KeywordInfo estimate : estimates) {
+        EstimateCacheKey key = keys.remove(estimate.getKeywordKey());
+        if (key == null) {
+          key = new EstimateCacheKey(estimate.getKeyword(), context);
+        }
+
+        if (NegativeEstimateCache.hasData(estimate.getEstimate())) {
+          cache.put(key, estimate.getEstimate());
+          cachedEstimates.add(estimate);
+        } else {
+          negativeCache.put(key);
+        }
+      }
+
+      // Keywords the nested estimator did not return could not be estimated.
+      for (EstimateCacheKey key : keys.values()) {
+        negativeCache.put(key);
+      }
     }
 
-    logger.info("Estimated " + keywords.size() + " keywords (" + cachedEstimates.size()
-        + " cached, " + retrieveKeywords.size() + " retrieved)");
+    return cachedEstimates;
+  }
 
-    return estimates;
+  /**
+   * Returns the number of estimates currently held in the cache.
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the number of keyword estimations saved because the keywords were known to have no
+   * estimate.
+   */
+  public long getNegativeHitCount() {
+    return negativeCache.getHitCount();
+  }
+
+  /**
+   * Returns hit / miss / eviction statistics of the cache.
+   */
+  public CacheStats getStats() {
+    return cache.stats();
   }
 }
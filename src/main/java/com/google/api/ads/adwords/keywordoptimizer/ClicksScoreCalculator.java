@@ -15,16 +15,33 @@
 package com.google.api.ads.adwords.keywordoptimizer;
 
 /**
- * Simple implementation of a {@link ScoreCalculator}, returning mean clicks as score.
+ * Simple implementation of a {@link ScoreCalculator}, returning mean clicks as score. Columnar
+ * collections are scored directly from their clicks columns (see
+ * {@link ColumnarKeywordCollection#getMeanClicksPerDay(int)}).
  */
-public class ClicksScoreCalculator implements ScoreCalculator {
+public class ClicksScoreCalculator implements BatchScoreCalculator {
   @Override
   public double calculate(TrafficEstimate estimate) {
-    if (estimate == null || estimate.getMean() == null) {
-      throw new IllegalArgumentException(
-          "Neither the given estimate nor its mean value can be null");
+    if (estimate == null) {
+      throw new IllegalArgumentException("The given estimate cannot be null");
     }
 
-    return estimate.getMean().getClicksPerDay();
+    float meanClicks = estimate.getMeanClicksPerDay();
+    if (Float.isNaN(meanClicks)) {
+      throw new IllegalArgumentException("The given estimate has no mean clicks");
+    }
+    return meanClicks;
+  }
+
+  @Override
+  public void calculate(ColumnarKeywordCollection keywords, double[] scores) {
+    for (int row = 0; row < keywords.size(); row++) {
+      float meanClicks = keywords.getMeanClicksPerDay(row);
+      if (Float.isNaN(meanClicks)) {
+        // Fails with the same message as scoring the estimate on its own.
+        calculate(keywords.getEstimate(row));
+      }
+      scores[row] = meanClicks;
+    }
   }
 }
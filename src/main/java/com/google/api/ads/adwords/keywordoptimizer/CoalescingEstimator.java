@@ -0,0 +1,142 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This {@link TrafficEstimator} makes sure that the same keyword (in the same context, see
+ * {@link EstimateCacheKey}) is only estimated once at a time, even if several threads ask for it
+ * concurrently. The first caller retrieves the estimate from the nested {@link TrafficEstimator},
+ * while all later callers wait for this in-flight request instead of sending a duplicate one.
+ *
+ * <p>In contrast to the {@link CachedEstimator}, nothing is kept once the request has finished, so
+ * it's typically used underneath a {@link CachedEstimator}.
+ */
+public class CoalescingEstimator implements TrafficEstimator {
+  private static final Logger logger = LoggerFactory.getLogger(CoalescingEstimator.class);
+
+  // Estimates currently being retrieved, by keyword and estimation context.
+  private final ConcurrentMap<EstimateCacheKey, SettableFuture<TrafficEstimate>> pending;
+  private final TrafficEstimator estimator;
+  private final AtomicLong coalescedCount;
+
+  /**
+   * Creates a new {@link CoalescingEstimator} around an existing {@link TrafficEstimator}.
+   *
+   * @param estimator the nested {@link TrafficEstimator}, which will be used for all keywords that
+   *                  are not being estimated already
+   */
+  public CoalescingEstimator(TrafficEstimator estimator) {
+    this.estimator = estimator;
+    this.pending = new ConcurrentHashMap<EstimateCacheKey, SettableFuture<TrafficEstimate>>();
+    this.coalescedCount = new AtomicLong();
+  }
+
+  @Override
+  public KeywordCollection estimate(KeywordCollection keywords) throws KeywordOptimizerException {
+    KeywordCollection retrieveKeywords = new KeywordCollection(keywords);
+
+    String context = EstimateCacheKey.getContext(keywords);
+    Map<KeywordKey, SettableFuture<TrafficEstimate>> owned =
+        new HashMap<KeywordKey, SettableFuture<TrafficEstimate>>();
+    Map<KeywordKey, SettableFuture<TrafficEstimate>> attached =
+        new HashMap<KeywordKey, SettableFuture<TrafficEstimate>>();
+    Map<KeywordKey, EstimateCacheKey> keys = new HashMap<KeywordKey, EstimateCacheKey>();
+    Map<KeywordKey, Keyword> attachedKeywords = new HashMap<KeywordKey, Keyword>();
+
+    // Register as the owner of all keywords nobody else is estimating right now.
+    for (KeywordInfo keywordInfo : keywords) {
+      Keyword keyword = keywordInfo.getKeyword();
+      KeywordKey keywordKey = keywordInfo.getKeywordKey();
+      EstimateCacheKey key = new EstimateCacheKey(keyword, context);
+      SettableFuture<TrafficEstimate> future = SettableFuture.create();
+      SettableFuture<TrafficEstimate> existing = pending.putIfAbsent(key, future);
+
+      if (existing != null) {
+        attached.put(keywordKey, existing);
+        attachedKeywords.put(keywordKey, keyword);
+      } else {
+        keys.put(keywordKey, key);
+        owned.put(keywordKey, future);
+        retrieveKeywords.add(new KeywordInfo(keyword, null, null));
+      }
+    }
+
+    if (!attached.isEmpty()) {
+      coalescedCount.addAndGet(attached.size());
+      logger.info("Waiting for " + attached.size() + " keywords already being estimated");
+    }
+
+    KeywordCollection estimates = new KeywordCollection(keywords);
+
+    // Retrieve own keywords first (before waiting for others), so callers never wait for each other
+    // in a cycle.
+    if (retrieveKeywords.size() > 0) {
+      try {
+        for (KeywordInfo estimate : estimator.estimate(retrieveKeywords)) {
+          estimates.add(estimate);
+          SettableFuture<TrafficEstimate> future = owned.get(estimate.getKeywordKey());
+          if (future != null) {
+            future.set(estimate.getEstimate());
+          }
+        }
+      } catch (KeywordOptimizerException e) {
+        for (SettableFuture<TrafficEstimate> future : owned.values()) {
+          future.setException(e);
+        }
+        throw e;
+      } catch (RuntimeException e) {
+        for (SettableFuture<TrafficEstimate> future : owned.values()) {
+          future.setException(e);
+        }
+        throw e;
+      } finally {
+        // Keywords the nested estimator did not return have no estimate.
+        for (Map.Entry<KeywordKey, SettableFuture<TrafficEstimate>> entry : owned.entrySet()) {
+          entry.getValue().set(null);
+          pending.remove(keys.get(entry.getKey()), entry.getValue());
+        }
+      }
+    }
+
+    for (Map.Entry<KeywordKey, SettableFuture<TrafficEstimate>> entry : attached.entrySet()) {
+      TrafficEstimate estimate = KeywordOptimizerUtil.waitFor(entry.getValue());
+      if (estimate != null) {
+        estimates.add(new KeywordInfo(attachedKeywords.get(entry.getKey()), estimate, null));
+      }
+    }
+
+    return estimates;
+  }
+
+  /**
+   * Returns the number of keywords that have not been estimated again because they were already
+   * being estimated.
+   */
+  public long getCoalescedCount() {
+    return coalescedCount.get();
+  }
+}
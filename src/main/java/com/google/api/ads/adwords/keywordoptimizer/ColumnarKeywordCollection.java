@@ -0,0 +1,490 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+/**
+ * A memory-efficient alternative to the {@link KeywordCollection} for large populations. Instead
+ * of keeping a {@link KeywordInfo} (with its {@link TrafficEstimate}, two
+ * {@link CompactStatsEstimate}s and boxed score) per keyword, it stores the shared keyword keys
+ * (see {@link KeywordDictionary}), scores and the minimum / maximum statistics in parallel
+ * primitive arrays, one row per keyword. Mean statistics are calculated from minimum and maximum
+ * when needed, just like {@link TrafficEstimate#getMeanStats()} does.
+ *
+ * <p>Selecting the best keywords and averaging scores work directly on the score array. For
+ * compatibility, the collection can still be iterated as {@link KeywordInfo}s, which are created
+ * on the fly (so only the keywords and scores, not the objects themselves, are kept).
+ */
+public class ColumnarKeywordCollection extends AdditionalInfoHolder
+    implements Iterable<KeywordInfo> {
+  private static final int INITIAL_CAPACITY = 16;
+
+  private int size;
+  private KeywordKey[] keys = new KeywordKey[INITIAL_CAPACITY];
+
+  // Scores (NaN for keywords without a score).
+  private double[] scores = new double[INITIAL_CAPACITY];
+  private boolean[] hasEstimate = new boolean[INITIAL_CAPACITY];
+  private final StatsColumns min = new StatsColumns(INITIAL_CAPACITY);
+  private final StatsColumns max = new StatsColumns(INITIAL_CAPACITY);
+
+  // Rows by keyword ID.
+  private final IntObjectMap<Integer> rows = new IntObjectMap<Integer>(INITIAL_CAPACITY);
+
+  private int scoredCount;
+  private double scoreSum;
+
+  /**
+   * Creates a new {@link ColumnarKeywordCollection} using the given max cpc.
+   *
+   * @param maxCpc the maximum cpc (cost per click) as a {@link Money} object
+   */
+  public ColumnarKeywordCollection(@Nullable Money maxCpc) {
+    super(maxCpc);
+  }
+
+  /**
+   * Creates a new {@link ColumnarKeywordCollection} based on the settings of a given
+   * {@link AdditionalInfoHolder}. This clones all "additional" settings (additional criteria, max
+   * cpc), but not the ones defined in any subclasses.
+   *
+   * @param other the prototype info holder to take the data from
+   */
+  public ColumnarKeywordCollection(AdditionalInfoHolder other) {
+    super(other);
+  }
+
+  /**
+   * Creates a new {@link ColumnarKeywordCollection} containing all keywords of the given
+   * {@link KeywordCollection} (as well as its settings).
+   *
+   * @param keywords the keywords to be copied
+   * @return the newly created {@link ColumnarKeywordCollection}
+   */
+  public static ColumnarKeywordCollection of(KeywordCollection keywords) {
+    ColumnarKeywordCollection columnar = new ColumnarKeywordCollection(keywords);
+    for (KeywordInfo keywordInfo : keywords) {
+      columnar.add(keywordInfo);
+    }
+    return columnar;
+  }
+
+  /**
+   * Adds keyword information about a keyword to this collection, replacing any previous
+   * information about the same keyword.
+   *
+   * @param info the keyword information to be added
+   */
+  public void add(KeywordInfo info) {
+    KeywordKey key = info.getKeywordKey();
+    Integer existingRow = rows.get(key.getId());
+    int row;
+
+    if (existingRow != null) {
+      row = existingRow;
+      if (!Double.isNaN(scores[row])) {
+        scoredCount--;
+        scoreSum -= scores[row];
+      }
+    } else {
+      row = appendRow(key);
+    }
+
+    scores[row] = info.hasScore() ? info.getScore() : Double.NaN;
+    if (info.hasScore()) {
+      scoredCount++;
+      scoreSum += info.getScore();
+    }
+
+    hasEstimate[row] = info.hasEstimate();
+    if (info.hasEstimate()) {
+      min.set(row, info.getEstimate().getMinStats());
+      max.set(row, info.getEstimate().getMaxStats());
+    }
+  }
+
+  /**
+   * Returns the size of this collection.
+   *
+   * @return the number of keywords contained in this collection
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns whether information about a given keyword exists in this collection.
+   *
+   * @param keyword they {@link Keyword} to be checked
+   * @return true if the collection contains the {@link Keyword}
+   */
+  public boolean contains(Keyword keyword) {
+    int id = KeywordDictionary.getDefault().findId(keyword);
+    return id >= 0 && rows.containsKey(id);
+  }
+
+  /**
+   * Returns the score of the keyword in the given row.
+   *
+   * @param row the row of the keyword (between 0 and {@link #size()} - 1)
+   * @return the score ({@link Double#NaN} if the keyword has no score)
+   */
+  public double getScore(int row) {
+    checkRow(row);
+    return scores[row];
+  }
+
+  /**
+   * Returns the keyword information of the given row (created on the fly).
+   *
+   * @param row the row of the keyword (between 0 and {@link #size()} - 1)
+   * @return the keyword information
+   */
+  public KeywordInfo get(int row) {
+    checkRow(row);
+
+    Keyword keyword = keys[row].toKeyword();
+    Double score = Double.isNaN(scores[row]) ? null : scores[row];
+    return new KeywordInfo(keyword, getEstimate(row), score);
+  }
+
+  /**
+   * Returns the estimate of the keyword in the given row (created on the fly).
+   *
+   * @param row the row of the keyword (between 0 and {@link #size()} - 1)
+   * @return the estimate (<code>null</code> if the keyword has none)
+   */
+  @Nullable
+  public TrafficEstimate getEstimate(int row) {
+    checkRow(row);
+    return hasEstimate[row] ? new TrafficEstimate(min.get(row), max.get(row)) : null;
+  }
+
+  /**
+   * Returns the mean clicks per day of the keyword in the given row, read directly from the
+   * columns (the same as {@link TrafficEstimate#getMeanClicksPerDay()} of its estimate).
+   *
+   * @param row the row of the keyword (between 0 and {@link #size()} - 1)
+   * @return the mean clicks per day ({@link Float#NaN} if unknown or without estimate)
+   */
+  public float getMeanClicksPerDay(int row) {
+    checkRow(row);
+    return hasEstimate[row]
+        ? CompactStatsEstimate.meanFloat(min.clicksPerDay[row], max.clicksPerDay[row])
+        : Float.NaN;
+  }
+
+  /**
+   * Returns the mean impressions per day of the keyword in the given row, read directly from the
+   * columns (the same as {@link TrafficEstimate#getMeanImpressionsPerDay()} of its estimate).
+   *
+   * @param row the row of the keyword (between 0 and {@link #size()} - 1)
+   * @return the mean impressions per day ({@link Float#NaN} if unknown or without estimate)
+   */
+  public float getMeanImpressionsPerDay(int row) {
+    checkRow(row);
+    return hasEstimate[row]
+        ? CompactStatsEstimate.meanFloat(min.impressionsPerDay[row], max.impressionsPerDay[row])
+        : Float.NaN;
+  }
+
+  /**
+   * Returns the average score of the keywords contained (skipping entries without a score).
+   *
+   * @return the average score ({@link Double#NaN} if no entries are evaluated yet)
+   */
+  public double getAverageScore() {
+    if (scoredCount == 0) {
+      return Double.NaN;
+    }
+    return scoreSum / scoredCount;
+  }
+
+  /**
+   * Returns the number of keywords contained that have a score.
+   *
+   * @return the number of keywords contained that have a score
+   */
+  public int getScoredCount() {
+    return scoredCount;
+  }
+
+  /**
+   * Returns the best x keywords in this collection. Keywords without a score are considered worst.
+   *
+   * @param count the number of keywords to return (=x)
+   * @return the best x keywords
+   */
+  public ColumnarKeywordCollection getBest(int count) {
+    ColumnarKeywordCollection bestKeywords = new ColumnarKeywordCollection(this);
+    for (int row : getBestRows(count)) {
+      bestKeywords.copyRow(this, row);
+    }
+    return bestKeywords;
+  }
+
+  /**
+   * Returns a list of all contained keywords sorted by score (best first, keywords without a score
+   * last).
+   *
+   * @return a list of all contained keywords sorted by score
+   */
+  public List<KeywordInfo> getListSortedByScore() {
+    int[] rows = getBestRows(size);
+    List<KeywordInfo> keywordInfoList = new ArrayList<KeywordInfo>(rows.length);
+    for (int row : rows) {
+      keywordInfoList.add(get(row));
+    }
+    return Collections.unmodifiableList(keywordInfoList);
+  }
+
+  /**
+   * Creates a {@link KeywordCollection} containing all keywords of this collection (as well as its
+   * settings).
+   *
+   * @return the newly created {@link KeywordCollection}
+   */
+  public KeywordCollection toKeywordCollection() {
+    KeywordCollection keywords = new KeywordCollection(this);
+    for (KeywordInfo keywordInfo : this) {
+      keywords.add(keywordInfo);
+    }
+    return keywords;
+  }
+
+  @Override
+  public Iterator<KeywordInfo> iterator() {
+    return new Iterator<KeywordInfo>() {
+      private int row;
+
+      @Override
+      public boolean hasNext() {
+        return row < size;
+      }
+
+      @Override
+      public KeywordInfo next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return get(row++);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+  }
+
+  /**
+   * Returns the rows of the best keywords, best first. A bounded min-heap of rows (ordered by
+   * score, worst on top) keeps the best keywords seen so far, so this takes O(n log x) time.
+   *
+   * @param count the maximum number of rows to return
+   * @return the rows of the best keywords
+   */
+  private int[] getBestRows(int count) {
+    int heapSize = 0;
+    int[] heap = new int[Math.max(0, Math.min(count, size))];
+    if (heap.length == 0) {
+      return heap;
+    }
+
+    for (int row = 0; row < size; row++) {
+      if (heapSize < heap.length) {
+        heap[heapSize] = row;
+        siftUp(heap, heapSize++);
+      } else if (isBetter(row, heap[0])) {
+        heap[0] = row;
+        siftDown(heap, 0, heapSize);
+      }
+    }
+
+    // Removing the worst row repeatedly fills the result from the back.
+    int[] rows = new int[heapSize];
+    for (int i = heapSize - 1; i >= 0; i--) {
+      rows[i] = heap[0];
+      heap[0] = heap[i];
+      siftDown(heap, 0, i);
+    }
+    return rows;
+  }
+
+  private void siftUp(int[] heap, int position) {
+    int i = position;
+    while (i > 0) {
+      int parent = (i - 1) / 2;
+      if (!isBetter(heap[parent], heap[i])) {
+        return;
+      }
+      swap(heap, i, parent);
+      i = parent;
+    }
+  }
+
+  private void siftDown(int[] heap, int position, int heapSize) {
+    int i = position;
+    while (true) {
+      int worst = i;
+      int left = 2 * i + 1;
+      int right = left + 1;
+      if (left < heapSize && isBetter(heap[worst], heap[left])) {
+        worst = left;
+      }
+      if (right < heapSize && isBetter(heap[worst], heap[right])) {
+        worst = right;
+      }
+      if (worst == i) {
+        return;
+      }
+      swap(heap, i, worst);
+      i = worst;
+    }
+  }
+
+  private static void swap(int[] heap, int i, int j) {
+    int row = heap[i];
+    heap[i] = heap[j];
+    heap[j] = row;
+  }
+
+  /**
+   * Returns whether the keyword in row a has a higher score than the one in row b (keywords
+   * without a score are worse than all others).
+   */
+  private boolean isBetter(int a, int b) {
+    double scoreA = scores[a];
+    double scoreB = scores[b];
+    if (Double.isNaN(scoreA)) {
+      return false;
+    }
+    return Double.isNaN(scoreB) || scoreA > scoreB;
+  }
+
+  /**
+   * Appends a row of another collection to this one (the keyword must not be contained yet).
+   */
+  private void copyRow(ColumnarKeywordCollection other, int otherRow) {
+    int row = appendRow(other.keys[otherRow]);
+    scores[row] = other.scores[otherRow];
+    if (!Double.isNaN(scores[row])) {
+      scoredCount++;
+      scoreSum += scores[row];
+    }
+    hasEstimate[row] = other.hasEstimate[otherRow];
+    min.copy(row, other.min, otherRow);
+    max.copy(row, other.max, otherRow);
+  }
+
+  /**
+   * Appends a new row for the given keyword (which must not be contained yet), growing the
+   * columns if necessary.
+   *
+   * @return the new row
+   */
+  private int appendRow(KeywordKey key) {
+    if (size == keys.length) {
+      grow();
+    }
+    int row = size++;
+    keys[row] = key;
+    rows.put(key.getId(), row);
+    return row;
+  }
+
+  /**
+   * Doubles the capacity of all columns.
+   */
+  private void grow() {
+    int capacity = 2 * keys.length;
+    keys = Arrays.copyOf(keys, capacity);
+    scores = Arrays.copyOf(scores, capacity);
+    hasEstimate = Arrays.copyOf(hasEstimate, capacity);
+    min.grow(capacity);
+    max.grow(capacity);
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row " + row + " is not in [0, " + size + ")");
+    }
+  }
+
+  /**
+   * The columns for one {@link CompactStatsEstimate} per row, using the same markers for missing
+   * values.
+   */
+  private static class StatsColumns {
+    private long[] averageCpc;
+    private double[] averagePosition;
+    private float[] clicksPerDay;
+    private double[] clickThroughRate;
+    private float[] impressionsPerDay;
+    private long[] totalCost;
+
+    private StatsColumns(int capacity) {
+      averageCpc = new long[capacity];
+      averagePosition = new double[capacity];
+      clicksPerDay = new float[capacity];
+      clickThroughRate = new double[capacity];
+      impressionsPerDay = new float[capacity];
+      totalCost = new long[capacity];
+    }
+
+    private void grow(int capacity) {
+      averageCpc = Arrays.copyOf(averageCpc, capacity);
+      averagePosition = Arrays.copyOf(averagePosition, capacity);
+      clicksPerDay = Arrays.copyOf(clicksPerDay, capacity);
+      clickThroughRate = Arrays.copyOf(clickThroughRate, capacity);
+      impressionsPerDay = Arrays.copyOf(impressionsPerDay, capacity);
+      totalCost = Arrays.copyOf(totalCost, capacity);
+    }
+
+    private void set(int row, CompactStatsEstimate stats) {
+      averageCpc[row] = stats.getAverageCpc();
+      averagePosition[row] = stats.getAveragePosition();
+      clicksPerDay[row] = stats.getClicksPerDay();
+      clickThroughRate[row] = stats.getClickThroughRate();
+      impressionsPerDay[row] = stats.getImpressionsPerDay();
+      totalCost[row] = stats.getTotalCost();
+    }
+
+    private void copy(int row, StatsColumns other, int otherRow) {
+      averageCpc[row] = other.averageCpc[otherRow];
+      averagePosition[row] = other.averagePosition[otherRow];
+      clicksPerDay[row] = other.clicksPerDay[otherRow];
+      clickThroughRate[row] = other.clickThroughRate[otherRow];
+      impressionsPerDay[row] = other.impressionsPerDay[otherRow];
+      totalCost[row] = other.totalCost[otherRow];
+    }
+
+    private CompactStatsEstimate get(int row) {
+      return new CompactStatsEstimate(averageCpc[row], averagePosition[row], clicksPerDay[row],
+          clickThroughRate[row], impressionsPerDay[row], totalCost[row]);
+    }
+  }
+}
@@ -0,0 +1,206 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.api.ads.adwords.axis.v201509.o.StatsEstimate;
+
+/**
+ * An immutable, compact form of a {@link StatsEstimate}, holding all statistics as primitive
+ * values: money values as micro amounts, the other values as floating point numbers. Missing
+ * values are represented by {@link #NO_MONEY} and {@link Double#NaN} / {@link Float#NaN}
+ * respectively. A {@link StatsEstimate} is only created on request (see
+ * {@link #toStatsEstimate()}).
+ */
+public final class CompactStatsEstimate {
+  /**
+   * Micro amount representing a missing money value.
+   */
+  public static final long NO_MONEY = Long.MIN_VALUE;
+
+  private final long averageCpc;
+  private final double averagePosition;
+  private final float clicksPerDay;
+  private final double clickThroughRate;
+  private final float impressionsPerDay;
+  private final long totalCost;
+
+  /**
+   * Creates a new {@link CompactStatsEstimate} by specifying all values.
+   *
+   * @param averageCpc the average cpc in micros ({@link #NO_MONEY} if missing)
+   * @param averagePosition the average position ({@link Double#NaN} if missing)
+   * @param clicksPerDay the clicks per day ({@link Float#NaN} if missing)
+   * @param clickThroughRate the click through rate ({@link Double#NaN} if missing)
+   * @param impressionsPerDay the impressions per day ({@link Float#NaN} if missing)
+   * @param totalCost the total cost in micros ({@link #NO_MONEY} if missing)
+   */
+  public CompactStatsEstimate(long averageCpc, double averagePosition, float clicksPerDay,
+      double clickThroughRate, float impressionsPerDay, long totalCost) {
+    this.averageCpc = averageCpc;
+    this.averagePosition = averagePosition;
+    this.clicksPerDay = clicksPerDay;
+    this.clickThroughRate = clickThroughRate;
+    this.impressionsPerDay = impressionsPerDay;
+    this.totalCost = totalCost;
+  }
+
+  /**
+   * Creates a {@link CompactStatsEstimate} holding the values of a given {@link StatsEstimate}.
+   *
+   * @param stats the statistics (<code>null</code> for no values at all)
+   * @return the compact statistics
+   */
+  public static CompactStatsEstimate of(StatsEstimate stats) {
+    if (stats == null) {
+      return new CompactStatsEstimate(NO_MONEY, Double.NaN, Float.NaN, Double.NaN, Float.NaN,
+          NO_MONEY);
+    }
+    return new CompactStatsEstimate(
+        toMicros(stats.getAverageCpc()),
+        stats.getAveragePosition() != null ? stats.getAveragePosition() : Double.NaN,
+        stats.getClicksPerDay() != null ? stats.getClicksPerDay() : Float.NaN,
+        stats.getClickThroughRate() != null ? stats.getClickThroughRate() : Double.NaN,
+        stats.getImpressionsPerDay() != null ? stats.getImpressionsPerDay() : Float.NaN,
+        toMicros(stats.getTotalCost()));
+  }
+
+  /**
+   * Calculates the mean of two statistics the same way as
+   * {@link KeywordOptimizerUtil#calculateMean(StatsEstimate, StatsEstimate)}: values missing on
+   * either side are missing in the mean as well.
+   *
+   * @param min the minimum statistics
+   * @param max the maximum statistics
+   * @return the mean statistics
+   */
+  public static CompactStatsEstimate mean(CompactStatsEstimate min, CompactStatsEstimate max) {
+    return new CompactStatsEstimate(
+        meanMicros(min.averageCpc, max.averageCpc),
+        (min.averagePosition + max.averagePosition) / 2,
+        meanFloat(min.clicksPerDay, max.clicksPerDay),
+        (min.clickThroughRate + max.clickThroughRate) / 2,
+        meanFloat(min.impressionsPerDay, max.impressionsPerDay),
+        meanMicros(min.totalCost, max.totalCost));
+  }
+
+  /**
+   * Returns the mean of two micro amounts (truncated, {@link #NO_MONEY} if either is missing).
+   */
+  static long meanMicros(long value1, long value2) {
+    if (value1 == NO_MONEY || value2 == NO_MONEY) {
+      return NO_MONEY;
+    }
+    return (long) (((double) value1 + value2) / 2);
+  }
+
+  /**
+   * Returns the mean of two float values ({@link Float#NaN} if either is missing).
+   */
+  static float meanFloat(float value1, float value2) {
+    return (float) (((double) value1 + value2) / 2);
+  }
+
+  /**
+   * Returns the average cpc in micros ({@link #NO_MONEY} if missing).
+   */
+  public long getAverageCpc() {
+    return averageCpc;
+  }
+
+  /**
+   * Returns the average position ({@link Double#NaN} if missing).
+   */
+  public double getAveragePosition() {
+    return averagePosition;
+  }
+
+  /**
+   * Returns the clicks per day ({@link Float#NaN} if missing).
+   */
+  public float getClicksPerDay() {
+    return clicksPerDay;
+  }
+
+  /**
+   * Returns the click through rate ({@link Double#NaN} if missing).
+   */
+  public double getClickThroughRate() {
+    return clickThroughRate;
+  }
+
+  /**
+   * Returns the impressions per day ({@link Float#NaN} if missing).
+   */
+  public float getImpressionsPerDay() {
+    return impressionsPerDay;
+  }
+
+  /**
+   * Returns the total cost in micros ({@link #NO_MONEY} if missing).
+   */
+  public long getTotalCost() {
+    return totalCost;
+  }
+
+  /**
+   * Returns whether at least one value is set.
+   */
+  public boolean hasData() {
+    return averageCpc != NO_MONEY || !Double.isNaN(averagePosition) || !Float.isNaN(clicksPerDay)
+        || !Double.isNaN(clickThroughRate) || !Float.isNaN(impressionsPerDay)
+        || totalCost != NO_MONEY;
+  }
+
+  /**
+   * Creates a new {@link StatsEstimate} holding these values (missing values are not set).
+   *
+   * @return the statistics as a {@link StatsEstimate}
+   */
+  public StatsEstimate toStatsEstimate() {
+    StatsEstimate stats = new StatsEstimate();
+    stats.setAverageCpc(toMoney(averageCpc));
+    if (!Double.isNaN(averagePosition)) {
+      stats.setAveragePosition(averagePosition);
+    }
+    if (!Float.isNaN(clicksPerDay)) {
+      stats.setClicksPerDay(clicksPerDay);
+    }
+    if (!Double.isNaN(clickThroughRate)) {
+      stats.setClickThroughRate(clickThroughRate);
+    }
+    if (!Float.isNaN(impressionsPerDay)) {
+      stats.setImpressionsPerDay(impressionsPerDay);
+    }
+    stats.setTotalCost(toMoney(totalCost));
+    return stats;
+  }
+
+  private static long toMicros(Money money) {
+    if (money == null || money.getMicroAmount() == null) {
+      return NO_MONEY;
+    }
+    return money.getMicroAmount();
+  }
+
+  private static Money toMoney(long microAmount) {
+    if (microAmount == NO_MONEY) {
+      return null;
+    }
+    Money money = new Money();
+    money.setMicroAmount(microAmount);
+    return money;
+  }
+}
@@ -0,0 +1,134 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Criterion;
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * A {@link SeedGenerator} combining the seed keywords of several other {@link SeedGenerator}s
+ * (e.g. from URLs, search terms and a category). The nested generators run concurrently, their
+ * keywords are merged into a single {@link KeywordCollection} without duplicates. All additional
+ * information (criteria, max cpc, match types) is passed on to every nested generator.
+ */
+public class CompositeSeedGenerator implements SeedGenerator {
+  private static final Logger logger = LoggerFactory.getLogger(CompositeSeedGenerator.class);
+
+  private final List<SeedGenerator> seedGenerators;
+
+  /**
+   * Creates a new {@link CompositeSeedGenerator} combining the given {@link SeedGenerator}s.
+   *
+   * @param seedGenerators the nested {@link SeedGenerator}s (at least one)
+   */
+  public CompositeSeedGenerator(List<? extends SeedGenerator> seedGenerators) {
+    if (seedGenerators.isEmpty()) {
+      throw new IllegalArgumentException("Need at least one seed generator");
+    }
+    this.seedGenerators = new ArrayList<SeedGenerator>(seedGenerators);
+  }
+
+  @Override
+  public KeywordCollection generate() throws KeywordOptimizerException {
+    ListeningExecutorService executor =
+        KeywordOptimizerUtil.createExecutor(seedGenerators.size(), "seed-generator-%d");
+
+    try {
+      List<ListenableFuture<KeywordCollection>> results =
+          new ArrayList<ListenableFuture<KeywordCollection>>();
+      for (final SeedGenerator seedGenerator : seedGenerators) {
+        results.add(executor.submit(new Callable<KeywordCollection>() {
+          @Override
+          public KeywordCollection call() throws KeywordOptimizerException {
+            return seedGenerator.generate();
+          }
+        }));
+      }
+
+      KeywordCollection keywords = null;
+      int total = 0;
+      for (KeywordCollection result : KeywordOptimizerUtil.waitFor(Futures.allAsList(results))) {
+        // All nested generators share the same additional information.
+        if (keywords == null) {
+          keywords = new KeywordCollection(result);
+        }
+        for (KeywordInfo keyword : result) {
+          keywords.add(keyword);
+        }
+        total += result.size();
+      }
+
+      logger.info("Merged " + total + " seed keywords from " + seedGenerators.size()
+          + " generators into " + keywords.size() + " distinct ones");
+      return keywords;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Override
+  public void addAdditionalCriterion(Criterion criterion) {
+    for (SeedGenerator seedGenerator : seedGenerators) {
+      seedGenerator.addAdditionalCriterion(criterion);
+    }
+  }
+
+  @Override
+  public void addAdditionalLocation(long locationId) {
+    for (SeedGenerator seedGenerator : seedGenerators) {
+      seedGenerator.addAdditionalLocation(locationId);
+    }
+  }
+
+  @Override
+  public void addAdditionalLanguage(long languageId) {
+    for (SeedGenerator seedGenerator : seedGenerators) {
+      seedGenerator.addAdditionalLanguage(languageId);
+    }
+  }
+
+  @Override
+  public void setMaxCpc(Money maxCpc) {
+    for (SeedGenerator seedGenerator : seedGenerators) {
+      seedGenerator.setMaxCpc(maxCpc);
+    }
+  }
+
+  @Override
+  public void addMatchType(KeywordMatchType matchType) {
+    for (SeedGenerator seedGenerator : seedGenerators) {
+      seedGenerator.addMatchType(matchType);
+    }
+  }
+
+  /**
+   * Returns the nested {@link SeedGenerator}s.
+   */
+  public List<SeedGenerator> getSeedGenerators() {
+    return Collections.unmodifiableList(seedGenerators);
+  }
+}
@@ -0,0 +1,239 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * A thread-safe variant of the {@link KeywordCollection}, so that several threads (for example
+ * parallel estimation batches) can write their results directly into the same collection instead
+ * of merging them in a single thread afterwards. Entries are kept by keyword ID (see
+ * {@link KeywordDictionary}) in a fixed number of {@link IntObjectMap}s ("stripes"), each guarded
+ * by its own lock, so IDs are never boxed and adds only lock the stripe of their keyword.
+ *
+ * <p>If information about a keyword is added while the collection already holds some, the
+ * {@link MergePolicy} decides which one is kept. Adds are atomic, so concurrent adds for the same
+ * keyword never lose the entry the policy would keep.
+ *
+ * <p>This collection does not keep any score statistics, use {@link #toKeywordCollection()} to
+ * get a (non thread-safe) snapshot for further processing.
+ */
+public class ConcurrentKeywordCollection extends AdditionalInfoHolder
+    implements Iterable<KeywordInfo> {
+
+  /**
+   * Defines which {@link KeywordInfo} is kept if there are several ones for the same keyword.
+   */
+  public enum MergePolicy {
+    /**
+     * Keeps the information added first.
+     */
+    KEEP_FIRST,
+
+    /**
+     * Keeps the information added last (the same behavior as {@link KeywordCollection#add}).
+     */
+    REPLACE,
+
+    /**
+     * Keeps the information with the higher score, information without a score is only kept if
+     * there is no other one. On a tie, the information added first is kept.
+     */
+    KEEP_BEST_SCORE;
+
+    /**
+     * Returns whether a new {@link KeywordInfo} should replace an existing one.
+     *
+     * @param existing the {@link KeywordInfo} currently kept
+     * @param candidate the {@link KeywordInfo} being added
+     * @return true if the candidate should be kept instead
+     */
+    boolean shouldReplace(KeywordInfo existing, KeywordInfo candidate) {
+      switch (this) {
+        case KEEP_FIRST:
+          return false;
+        case REPLACE:
+          return true;
+        default:
+          if (!candidate.hasScore()) {
+            return false;
+          }
+          return !existing.hasScore() || candidate.getScore() > existing.getScore();
+      }
+    }
+  }
+
+  // Number of stripes, as a power of two (more than the usual number of estimation threads).
+  private static final int STRIPE_BITS = 4;
+
+  private final List<IntObjectMap<KeywordInfo>> stripes;
+  private final MergePolicy mergePolicy;
+
+  /**
+   * Creates a new {@link ConcurrentKeywordCollection} based on the settings of a given
+   * {@link AdditionalInfoHolder} (see {@link AdditionalInfoHolder#AdditionalInfoHolder(
+   * AdditionalInfoHolder)}).
+   *
+   * @param other the prototype info holder to take the data from
+   * @param mergePolicy decides which information is kept for keywords added several times
+   */
+  public ConcurrentKeywordCollection(AdditionalInfoHolder other, MergePolicy mergePolicy) {
+    super(other);
+    this.stripes = new ArrayList<IntObjectMap<KeywordInfo>>(1 << STRIPE_BITS);
+    for (int i = 0; i < 1 << STRIPE_BITS; i++) {
+      stripes.add(new IntObjectMap<KeywordInfo>());
+    }
+    this.mergePolicy = mergePolicy;
+  }
+
+  /**
+   * Adds keyword information about a keyword to this collection, if the {@link MergePolicy}
+   * allows it. This method may be called by several threads concurrently.
+   *
+   * @param info the keyword information to be added
+   * @return true if the information was added, false if existing information was kept instead
+   */
+  public boolean add(KeywordInfo info) {
+    int id = info.getKeywordId();
+    IntObjectMap<KeywordInfo> stripe = getStripe(id);
+
+    synchronized (stripe) {
+      KeywordInfo existing = stripe.get(id);
+      if (existing != null && !mergePolicy.shouldReplace(existing, info)) {
+        return false;
+      }
+      stripe.put(id, info);
+      return true;
+    }
+  }
+
+  /**
+   * Adds all given keyword information to this collection (see {@link #add(KeywordInfo)}).
+   *
+   * @param infos the keyword information to be added
+   * @return the number of entries that were added
+   */
+  public int addAll(Iterable<KeywordInfo> infos) {
+    int added = 0;
+    for (KeywordInfo info : infos) {
+      if (add(info)) {
+        added++;
+      }
+    }
+    return added;
+  }
+
+  /**
+   * Returns the information about a given keyword.
+   *
+   * @param keyword the {@link Keyword} to look for
+   * @return the {@link KeywordInfo} kept for this keyword, or <code>null</code> if there is none
+   */
+  @Nullable
+  public KeywordInfo get(Keyword keyword) {
+    int id = KeywordDictionary.getDefault().findId(keyword);
+    if (id < 0) {
+      return null;
+    }
+
+    IntObjectMap<KeywordInfo> stripe = getStripe(id);
+    synchronized (stripe) {
+      return stripe.get(id);
+    }
+  }
+
+  /**
+   * Returns whether information about a given keyword exists in this collection.
+   *
+   * @param keyword they {@link Keyword} to be checked
+   * @return true if the collection contains the {@link Keyword}
+   */
+  public boolean contains(Keyword keyword) {
+    return get(keyword) != null;
+  }
+
+  /**
+   * Returns the size of this collection.
+   *
+   * @return the number of {@link Keyword}s contained in this collection
+   */
+  public int size() {
+    int size = 0;
+    for (IntObjectMap<KeywordInfo> stripe : stripes) {
+      synchronized (stripe) {
+        size += stripe.size();
+      }
+    }
+    return size;
+  }
+
+  /**
+   * Returns the {@link MergePolicy} used by this collection.
+   */
+  public MergePolicy getMergePolicy() {
+    return mergePolicy;
+  }
+
+  /**
+   * Creates a {@link KeywordCollection} holding the current entries and the same additional
+   * settings. Entries added concurrently while the snapshot is taken may or may not be contained.
+   *
+   * @return a snapshot of this collection
+   */
+  public KeywordCollection toKeywordCollection() {
+    KeywordCollection snapshot = new KeywordCollection(this);
+    for (KeywordInfo info : getEntries()) {
+      snapshot.add(info);
+    }
+    return snapshot;
+  }
+
+  /**
+   * Returns an iterator over the current entries. It never fails because of concurrent adds, but
+   * may or may not reflect them.
+   */
+  @Override
+  public Iterator<KeywordInfo> iterator() {
+    return Collections.unmodifiableList(getEntries()).iterator();
+  }
+
+  /**
+   * Copies the current entries, locking one stripe at a time.
+   */
+  private List<KeywordInfo> getEntries() {
+    List<KeywordInfo> entries = new ArrayList<KeywordInfo>();
+    for (IntObjectMap<KeywordInfo> stripe : stripes) {
+      synchronized (stripe) {
+        entries.addAll(stripe.values());
+      }
+    }
+    return entries;
+  }
+
+  /**
+   * Returns the stripe for the given keyword ID. It's chosen by the upper bits of a multiplicative
+   * hash, as the maps themselves use the lower ones.
+   */
+  private IntObjectMap<KeywordInfo> getStripe(int id) {
+    return stripes.get((id * 0x9E3779B9) >>> (32 - STRIPE_BITS));
+  }
+}
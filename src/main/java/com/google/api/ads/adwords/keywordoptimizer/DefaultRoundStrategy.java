@@ -26,6 +26,9 @@ import javax.annotation.Nullable;
  * another. Every round, this strategy takes the best X keywords, derives new ones from it and adds
  * them to the list which is subsequently trimmed back to a maximum size. This is done until either
  * a maximum number of steps is reached or a minimum improvement could not be reached anymore.
+ *
+ * <p>Optionally, the population is kept in a {@link ColumnarKeywordCollection} while a round is
+ * processed, which needs less memory for large populations.
  */
 public class DefaultRoundStrategy implements RoundStrategy {
   private static final Logger logger = LoggerFactory.getLogger(RoundStrategy.class);
@@ -34,6 +37,7 @@ public class DefaultRoundStrategy implements RoundStrategy {
   private final Double minImprovementBetweenSteps;
   private final int maxPopulationSize;
   private final int maxNumberOfAlternatives;
+  private final boolean columnarPopulation;
 
   private int currentStep;
   private Double lastAvgScore;
@@ -49,10 +53,27 @@ public class DefaultRoundStrategy implements RoundStrategy {
    */
   public DefaultRoundStrategy(@Nullable Integer maxNrSteps, @Nullable Double minImprovement,
       int maxPopulationSize, int replicateBestCount) {
+    this(maxNrSteps, minImprovement, maxPopulationSize, replicateBestCount, false);
+  }
+
+  /**
+   * Creates a new {@link DefaultRoundStrategy}.
+   * 
+   * @param maxNrSteps maximum number of round / steps (<code>null</code> for no restriction)
+   * @param minImprovement minimum improvement of the average score to be reached until the process
+   *                       stops (<code>null</code> for no restriction)
+   * @param maxPopulationSize maximum size of the population at any time
+   * @param replicateBestCount number of keywords to be used for replication
+   * @param columnarPopulation whether to keep the population in a
+   *                           {@link ColumnarKeywordCollection} during a round
+   */
+  public DefaultRoundStrategy(@Nullable Integer maxNrSteps, @Nullable Double minImprovement,
+      int maxPopulationSize, int replicateBestCount, boolean columnarPopulation) {
     this.maxNumberOfSteps = maxNrSteps;
     this.minImprovementBetweenSteps = minImprovement;
     this.maxPopulationSize = maxPopulationSize;
     this.maxNumberOfAlternatives = replicateBestCount;
+    this.columnarPopulation = columnarPopulation;
   
     lastAvgScore = null;
   }
@@ -70,6 +91,8 @@ public class DefaultRoundStrategy implements RoundStrategy {
         config.getInt(KeywordOptimizerProperty.RoundStrategyMaxPopulation.getName(), 100);
     maxNumberOfAlternatives =
         config.getInt(KeywordOptimizerProperty.RoundStrategyReplicateBest.getName(), 10);
+    columnarPopulation = config.getBoolean(
+        KeywordOptimizerProperty.RoundStrategyColumnarPopulation.getName(), false);
   
     lastAvgScore = null;
   }
@@ -81,6 +104,21 @@ public class DefaultRoundStrategy implements RoundStrategy {
       return null;
     }
 
+    KeywordCollection nextPopulation = columnarPopulation
+        ? nextColumnarPopulation(currentPopulation, alternativesFinder, evaluator)
+        : nextPopulation(currentPopulation, alternativesFinder, evaluator);
+
+    lastAvgScore = nextPopulation.getAverageScore();
+    currentStep++;
+    
+    return nextPopulation;
+  }
+
+  /**
+   * Derives the population of the next round.
+   */
+  private KeywordCollection nextPopulation(KeywordCollection currentPopulation,
+      AlternativesFinder alternativesFinder, Evaluator evaluator) throws KeywordOptimizerException {
     // 1. Trim to max size (already remove worst X ones).
     KeywordCollection nextPopulation =
         currentPopulation.getBest(maxPopulationSize - maxNumberOfAlternatives);
@@ -106,13 +144,45 @@ public class DefaultRoundStrategy implements RoundStrategy {
     // 5. Trim population back to max size.
     nextPopulation = nextPopulation.getBest(maxPopulationSize);
     logger.info("- Trimmed population back to size " + nextPopulation.size());
-
-    lastAvgScore = nextPopulation.getAverageScore();
-    currentStep++;
-    
     return nextPopulation;
   }
 
+  /**
+   * Derives the population of the next round the same way as
+   * {@link #nextPopulation(KeywordCollection, AlternativesFinder, Evaluator)}, but keeps it in a
+   * {@link ColumnarKeywordCollection} until it's returned.
+   */
+  private KeywordCollection nextColumnarPopulation(KeywordCollection currentPopulation,
+      AlternativesFinder alternativesFinder, Evaluator evaluator) throws KeywordOptimizerException {
+    // 1. Trim to max size (already remove worst X ones).
+    ColumnarKeywordCollection nextPopulation = ColumnarKeywordCollection.of(currentPopulation)
+        .getBest(maxPopulationSize - maxNumberOfAlternatives);
+    logger.info("- Trimmed population to " + nextPopulation.size());
+
+    // 2. Replicate best ones.
+    KeywordCollection bestKeywords =
+        nextPopulation.getBest(maxNumberOfAlternatives).toKeywordCollection();
+    KeywordCollection alternativeKeywords = alternativesFinder.find(bestKeywords);
+    logger.info("- Found " + alternativeKeywords.size() + " keywords based on "
+        + maxNumberOfAlternatives + " current best");
+
+    // 3. Rate best ones.
+    KeywordCollection evaluatedAlternatives = evaluator.evaluate(alternativeKeywords);
+
+    // 4. Add the best ones to the list.
+    for (KeywordInfo evaluation : evaluatedAlternatives) {
+      if (!nextPopulation.contains(evaluation.getKeyword())) {
+        nextPopulation.add(evaluation);
+      }
+    }
+    logger.info("- Merged population, new size is " + nextPopulation.size());
+
+    // 5. Trim population back to max size.
+    nextPopulation = nextPopulation.getBest(maxPopulationSize);
+    logger.info("- Trimmed population back to size " + nextPopulation.size());
+    return nextPopulation.toKeywordCollection();
+  }
+
   @Override
   public boolean isFinished(KeywordCollection currentPopulation) {
     if (maxNumberOfSteps != null && currentStep >= maxNumberOfSteps) {
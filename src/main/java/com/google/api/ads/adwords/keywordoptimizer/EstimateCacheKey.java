@@ -0,0 +1,159 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Criterion;
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.common.base.Joiner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Identifies a {@link TrafficEstimate} by everything that has an influence on it: the keyword text,
+ * its match type, the maximum cpc and the additional criteria (location, language, ...). Two
+ * {@link KeywordCollection}s with different settings can therefore share one estimate cache
+ * without getting each other's estimates.
+ *
+ * <p>Keys are hashed using the precalculated 64-bit hash of the {@link KeywordKey} and compared
+ * by {@link KeywordKey} and context, so keyword texts are only compared if the hashes match.
+ * Creating a key does not register the keyword in the {@link KeywordDictionary}.
+ */
+public final class EstimateCacheKey {
+  private static final Joiner CRITERIA_JOINER = Joiner.on(';');
+
+  private final KeywordKey keywordKey;
+  private final KeywordMatchType matchType;
+  private final String context;
+  private final int hash;
+
+  /**
+   * Creates a new {@link EstimateCacheKey} for a keyword in a context that has been calculated
+   * before using {@link #getContext(AdditionalInfoHolder)}.
+   *
+   * @param keyword the keyword to create the key for
+   * @param context the fingerprint of the max cpc and additional criteria
+   */
+  public EstimateCacheKey(Keyword keyword, String context) {
+    this.keywordKey = KeywordKey.of(keyword);
+    this.matchType = keyword.getMatchType();
+    this.context = context;
+
+    long keyHash = 31 * keywordKey.getHash64() + context.hashCode();
+    this.hash = (int) (keyHash ^ (keyHash >>> 32));
+  }
+
+  /**
+   * Creates a new {@link EstimateCacheKey} for a keyword in the context of the given info holder.
+   *
+   * @param keyword the keyword to create the key for
+   * @param info the info holder defining max cpc and additional criteria
+   * @return the newly created key
+   */
+  public static EstimateCacheKey create(Keyword keyword, AdditionalInfoHolder info) {
+    return new EstimateCacheKey(keyword, getContext(info));
+  }
+
+  /**
+   * Calculates a fingerprint of the max cpc and the additional criteria of a given info holder. The
+   * order in which criteria have been added does not matter. It's a good idea to calculate this
+   * once per {@link KeywordCollection} and reuse it for all of its keywords. Info holders that
+   * have been copied from each other share the fingerprint until one of them is changed.
+   *
+   * @param info the info holder defining max cpc and additional criteria
+   * @return a string representation of the context, equal for equal settings
+   */
+  public static String getContext(AdditionalInfoHolder info) {
+    return info.getEstimationContext();
+  }
+
+  /**
+   * Actually calculates the fingerprint for {@link #getContext(AdditionalInfoHolder)}.
+   *
+   * @param info the info holder defining max cpc and additional criteria
+   * @return a string representation of the context, equal for equal settings
+   */
+  static String calculateContext(AdditionalInfoHolder info) {
+    Money maxCpc = info.getMaxCpc();
+    String cpc = maxCpc == null ? "-" : String.valueOf(maxCpc.getMicroAmount());
+
+    return cpc + "|" + getCriteriaContext(info);
+  }
+
+  /**
+   * Calculates a fingerprint of the additional criteria of a given info holder only (ignoring the
+   * max cpc). The order in which criteria have been added does not matter.
+   *
+   * @param info the info holder defining additional criteria
+   * @return a string representation of the criteria, equal for equal criteria
+   */
+  public static String getCriteriaContext(AdditionalInfoHolder info) {
+    List<String> criteria = new ArrayList<String>();
+    for (Criterion criterion : info.getAdditionalCriteria()) {
+      criteria.add(criterion.getClass().getSimpleName() + ":" + criterion.getId());
+    }
+    Collections.sort(criteria);
+
+    return CRITERIA_JOINER.join(criteria);
+  }
+
+  /**
+   * Returns the keyword text.
+   */
+  public String getText() {
+    return keywordKey.getText();
+  }
+
+  /**
+   * Returns the keyword match type.
+   */
+  public KeywordMatchType getMatchType() {
+    return matchType;
+  }
+
+  /**
+   * Returns the fingerprint of max cpc and additional criteria.
+   */
+  public String getContext() {
+    return context;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof EstimateCacheKey)) {
+      return false;
+    }
+
+    EstimateCacheKey other = (EstimateCacheKey) obj;
+    return hash == other.hash && keywordKey.equals(other.keywordKey)
+        && context.equals(other.context);
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    return keywordKey.getText() + "[" + matchType + "]@" + context;
+  }
+}
@@ -16,11 +16,13 @@ package com.google.api.ads.adwords.keywordoptimizer;
 
 /**
  * Evaluates {@link KeywordCollection} by first obtaining an {@link TrafficEstimate} for each
- * keyword and then rating them using a {@link ScoreCalculator}.
+ * keyword and then rating them using a {@link ScoreCalculator}. The estimates are stored in a
+ * {@link ColumnarKeywordCollection} and all scored at once (see {@link BatchScoreCalculator}),
+ * calculators not supporting this are wrapped in a {@link BatchScoreCalculatorAdapter}.
  */
 public class EstimatorBasedEvaluator implements Evaluator {
   private final TrafficEstimator estimator;
-  private final ScoreCalculator scoreCalculator;
+  private final BatchScoreCalculator scoreCalculator;
 
   /**
    * Creates a new {@link EstimatorBasedEvaluator} that uses the given arguments for calculating the
@@ -31,20 +33,42 @@ public class EstimatorBasedEvaluator implements Evaluator {
    */
   public EstimatorBasedEvaluator(TrafficEstimator estimator, ScoreCalculator scoreCalculator) {
     this.estimator = estimator;
-    this.scoreCalculator = scoreCalculator;
+
+    if (scoreCalculator instanceof BatchScoreCalculator) {
+      this.scoreCalculator = (BatchScoreCalculator) scoreCalculator;
+    } else {
+      this.scoreCalculator = new BatchScoreCalculatorAdapter(scoreCalculator);
+    }
   }
 
   @Override
   public KeywordCollection evaluate(KeywordCollection keywords) throws KeywordOptimizerException {
-    KeywordCollection evaluations = new KeywordCollection(keywords);
-
-    KeywordCollection estimates = estimator.estimate(keywords);
+    return score(keywords, estimator.estimate(keywords));
+  }
 
+  /**
+   * Calculates the scores for the given estimates.
+   *
+   * @param keywords the evaluated {@link KeywordCollection}
+   * @param estimates the {@link KeywordCollection} containing the estimates for these keywords
+   * @return a {@link KeywordCollection} containing estimates and scores
+   * @throws KeywordOptimizerException in case of an error calculating a score
+   */
+  private KeywordCollection score(KeywordCollection keywords, KeywordCollection estimates)
+      throws KeywordOptimizerException {
+    ColumnarKeywordCollection columns = new ColumnarKeywordCollection(keywords);
     for (KeywordInfo estimate : estimates) {
-      double score = scoreCalculator.calculate(estimate.getEstimate());
+      columns.add(estimate);
+    }
+    double[] scores = new double[columns.size()];
+    scoreCalculator.calculate(columns, scores);
 
+    // Rows are in the order of iteration, as every keyword is contained once only.
+    KeywordCollection evaluations = new KeywordCollection(keywords);
+    int row = 0;
+    for (KeywordInfo estimate : estimates) {
       KeywordInfo evaluation =
-          new KeywordInfo(estimate.getKeyword(), estimate.getEstimate(), score);
+          new KeywordInfo(estimate.getKeyword(), estimate.getEstimate(), scores[row++]);
       evaluations.add(evaluation);
     }
 
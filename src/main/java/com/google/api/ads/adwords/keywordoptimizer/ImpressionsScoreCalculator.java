@@ -16,15 +16,32 @@ package com.google.api.ads.adwords.keywordoptimizer;
 
 /**
  * Simple implementation of a {@link ScoreCalculator}, returning mean impressions as score.
+ * Columnar collections are scored directly from their impressions columns (see
+ * {@link ColumnarKeywordCollection#getMeanImpressionsPerDay(int)}).
  */
-public class ImpressionsScoreCalculator implements ScoreCalculator {
+public class ImpressionsScoreCalculator implements BatchScoreCalculator {
   @Override
   public double calculate(TrafficEstimate estimate) {
-    if (estimate == null || estimate.getMean() == null) {
-      throw new IllegalArgumentException(
-          "Neither the given estimate nor its mean value can be null");
+    if (estimate == null) {
+      throw new IllegalArgumentException("The given estimate cannot be null");
     }
 
-    return estimate.getMean().getImpressionsPerDay();
+    float meanImpressions = estimate.getMeanImpressionsPerDay();
+    if (Float.isNaN(meanImpressions)) {
+      throw new IllegalArgumentException("The given estimate has no mean impressions");
+    }
+    return meanImpressions;
+  }
+
+  @Override
+  public void calculate(ColumnarKeywordCollection keywords, double[] scores) {
+    for (int row = 0; row < keywords.size(); row++) {
+      float meanImpressions = keywords.getMeanImpressionsPerDay(row);
+      if (Float.isNaN(meanImpressions)) {
+        // Fails with the same message as scoring the estimate on its own.
+        calculate(keywords.getEstimate(row));
+      }
+      scores[row] = meanImpressions;
+    }
   }
 }
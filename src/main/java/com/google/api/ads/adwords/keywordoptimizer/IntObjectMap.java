@@ -0,0 +1,210 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A simple hash map using primitive int keys (e.g. IDs from the {@link KeywordDictionary}), so
+ * neither keys are boxed nor key objects are hashed. It uses open addressing with linear probing
+ * and does not support removal or null values. Not thread-safe.
+ *
+ * @param <V> the type of the values
+ */
+final class IntObjectMap<V> {
+  private static final int MIN_CAPACITY = 16;
+
+  private int[] keys;
+  private Object[] values;
+  private int size;
+
+  /**
+   * Creates a new, empty {@link IntObjectMap}.
+   */
+  IntObjectMap() {
+    this(MIN_CAPACITY);
+  }
+
+  /**
+   * Creates a new, empty {@link IntObjectMap} for about the given number of entries.
+   *
+   * @param expectedSize the expected number of entries
+   */
+  IntObjectMap(int expectedSize) {
+    int capacity = MIN_CAPACITY;
+    while (capacity < 2 * expectedSize) {
+      capacity <<= 1;
+    }
+    keys = new int[capacity];
+    values = new Object[capacity];
+  }
+
+  /**
+   * Returns the value for the given key (or null if there is none).
+   *
+   * @param key the key to look up
+   * @return the value for the key (or null if there is none)
+   */
+  @SuppressWarnings("unchecked")
+  V get(int key) {
+    int mask = keys.length - 1;
+    for (int i = index(key, mask); values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        return (V) values[i];
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns whether there is a value for the given key.
+   *
+   * @param key the key to look up
+   * @return true if there is a value for the given key
+   */
+  boolean containsKey(int key) {
+    return get(key) != null;
+  }
+
+  /**
+   * Sets the value for the given key.
+   *
+   * @param key the key
+   * @param value the value (not null)
+   * @return the previous value for the key (or null if there was none)
+   */
+  @SuppressWarnings("unchecked")
+  V put(int key, V value) {
+    if (value == null) {
+      throw new NullPointerException("Null values are not supported");
+    }
+
+    int mask = keys.length - 1;
+    int i = index(key, mask);
+    for (; values[i] != null; i = (i + 1) & mask) {
+      if (keys[i] == key) {
+        V previous = (V) values[i];
+        values[i] = value;
+        return previous;
+      }
+    }
+
+    keys[i] = key;
+    values[i] = value;
+    size++;
+
+    // Keep the load factor at 0.5 at most, so probe sequences stay short.
+    if (2 * size > keys.length) {
+      resize(2 * keys.length);
+    }
+    return null;
+  }
+
+  /**
+   * Returns the number of entries.
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns a (read-only) view of all values.
+   */
+  Collection<V> values() {
+    return new AbstractCollection<V>() {
+      @Override
+      public Iterator<V> iterator() {
+        return new ValueIterator();
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  /**
+   * Moves all entries to new tables of the given capacity.
+   *
+   * @param capacity the new capacity (a power of two)
+   */
+  private void resize(int capacity) {
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+    keys = new int[capacity];
+    values = new Object[capacity];
+
+    int mask = capacity - 1;
+    for (int j = 0; j < oldKeys.length; j++) {
+      if (oldValues[j] != null) {
+        int i = index(oldKeys[j], mask);
+        while (values[i] != null) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
+  }
+
+  /**
+   * Returns the preferred index for a key. Dense IDs are spread using a multiplicative hash.
+   */
+  private static int index(int key, int mask) {
+    int hash = key * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  /**
+   * Iterates over all values in table order.
+   */
+  private class ValueIterator implements Iterator<V> {
+    private final Object[] table = values;
+    private int next = advance(0);
+
+    private int advance(int from) {
+      int i = from;
+      while (i < table.length && table[i] == null) {
+        i++;
+      }
+      return i;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next < table.length;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      V value = (V) table[next];
+      next = advance(next + 1);
+      return value;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -20,13 +20,14 @@ import com.google.api.ads.adwords.axis.v201509.cm.Money;
 
 import org.apache.commons.lang.SystemUtils;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -34,11 +35,24 @@ import javax.annotation.Nullable;
 /**
  * Represents a set of keywords with information about their quality ({@link KeywordInfo}) as well
  * as related information in order to evaluate this quality information (
- * {@link AdditionalInfoHolder}). This collections is implemented as a map with {@link Keyword}'s as
- * keys and {@link KeywordInfo}'s as values to eliminate duplicates.
+ * {@link AdditionalInfoHolder}). This collections is implemented as a map with keyword IDs (see
+ * {@link KeywordDictionary}) as keys and {@link KeywordInfo}'s as values to eliminate duplicates.
+ *
+ * <p>Statistics about the scores (average, minimum, maximum, variance) are kept up to date while
+ * entries are added or replaced, so they are available without scanning the collection again.
  */
 public class KeywordCollection extends AdditionalInfoHolder implements Iterable<KeywordInfo> {
-  private final Map<Keyword, KeywordInfo> keywords;
+  private final IntObjectMap<KeywordInfo> keywords;
+
+  // Running score statistics over all entries having a score.
+  private int scoredCount;
+  private double scoreSum;
+  private double scoreSumOfSquares;
+
+  // Minimum / maximum are recalculated lazily once an entry holding one of them is replaced.
+  private double minScore = Double.POSITIVE_INFINITY;
+  private double maxScore = Double.NEGATIVE_INFINITY;
+  private boolean extremesValid = true;
 
   /**
    * Creates a new {@link KeywordCollection} using the given max cpc.
@@ -47,7 +61,7 @@ public class KeywordCollection extends AdditionalInfoHolder implements Iterable<
    */
   public KeywordCollection(@Nullable Money maxCpc) {
     super(maxCpc);
-    keywords = new HashMap<Keyword, KeywordInfo>();
+    keywords = new IntObjectMap<KeywordInfo>();
   }
 
   /**
@@ -59,7 +73,7 @@ public class KeywordCollection extends AdditionalInfoHolder implements Iterable<
    */
   public KeywordCollection(AdditionalInfoHolder other) {
     super(other);
-    keywords = new HashMap<Keyword, KeywordInfo>();
+    keywords = new IntObjectMap<KeywordInfo>();
   }
 
   /**
@@ -68,7 +82,64 @@ public class KeywordCollection extends AdditionalInfoHolder implements Iterable<
    * @param info the keyword information to be added
    */
   public void add(KeywordInfo info) {
-    keywords.put(info.getKeyword(), info);
+    KeywordInfo replaced = keywords.put(info.getKeywordId(), info);
+
+    if (replaced != null && replaced.hasScore()) {
+      removeScore(replaced.getScore());
+    }
+    if (info.hasScore()) {
+      addScore(info.getScore());
+    }
+  }
+
+  /**
+   * Adds a score to the running score statistics.
+   *
+   * @param score the score to be added
+   */
+  private void addScore(double score) {
+    scoredCount++;
+    scoreSum += score;
+    scoreSumOfSquares += score * score;
+
+    if (extremesValid) {
+      minScore = Math.min(minScore, score);
+      maxScore = Math.max(maxScore, score);
+    }
+  }
+
+  /**
+   * Removes a score from the running score statistics.
+   *
+   * @param score the score to be removed
+   */
+  private void removeScore(double score) {
+    scoredCount--;
+    scoreSum -= score;
+    scoreSumOfSquares -= score * score;
+
+    if (score <= minScore || score >= maxScore) {
+      extremesValid = false;
+    }
+  }
+
+  /**
+   * Recalculates the minimum and maximum score if they are not up to date.
+   */
+  private void updateExtremes() {
+    if (extremesValid) {
+      return;
+    }
+
+    minScore = Double.POSITIVE_INFINITY;
+    maxScore = Double.NEGATIVE_INFINITY;
+    for (KeywordInfo keywordInfo : keywords.values()) {
+      if (keywordInfo.hasScore()) {
+        minScore = Math.min(minScore, keywordInfo.getScore());
+        maxScore = Math.max(maxScore, keywordInfo.getScore());
+      }
+    }
+    extremesValid = true;
   }
 
   /**
@@ -87,7 +158,8 @@ public class KeywordCollection extends AdditionalInfoHolder implements Iterable<
    * @return true if the list contains the {@link Keyword}
    */
   public boolean contains(Keyword keyword) {
-    return keywords.containsKey(keyword);
+    int id = KeywordDictionary.getDefault().findId(keyword);
+    return id >= 0 && keywords.containsKey(id);
   }
 
   /**
@@ -96,7 +168,38 @@ public class KeywordCollection extends AdditionalInfoHolder implements Iterable<
    * @return the set of contained {@link Keyword}s
    */
   public Set<Keyword> getKeywords() {
-    return keywords.keySet();
+    return new AbstractSet<Keyword>() {
+      @Override
+      public Iterator<Keyword> iterator() {
+        final Iterator<KeywordInfo> infos = keywords.values().iterator();
+        return new Iterator<Keyword>() {
+          @Override
+          public boolean hasNext() {
+            return infos.hasNext();
+          }
+
+          @Override
+          public Keyword next() {
+            return infos.next().getKeyword();
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof Keyword && KeywordCollection.this.contains((Keyword) o);
+      }
+
+      @Override
+      public int size() {
+        return keywords.size();
+      }
+    };
   }
 
   /**
@@ -107,7 +210,7 @@ public class KeywordCollection extends AdditionalInfoHolder implements Iterable<
   public Set<String> getContainingKeywordTexts() {
     Set<String> keywordTexts = new HashSet<String>();
 
-    for (Keyword keyword : keywords.keySet()) {
+    for (Keyword keyword : getKeywords()) {
       keywordTexts.add(keyword.getText());
     }
 
@@ -122,7 +225,7 @@ public class KeywordCollection extends AdditionalInfoHolder implements Iterable<
   public Set<KeywordMatchType> getContainingMatchTypes() {
     Set<KeywordMatchType> matchTypes = new HashSet<KeywordMatchType>();
 
-    for (Keyword keyword : keywords.keySet()) {
+    for (Keyword keyword : getKeywords()) {
       matchTypes.add(keyword.getMatchType());
     }
 
@@ -152,16 +255,40 @@ public class KeywordCollection extends AdditionalInfoHolder implements Iterable<
   }
 
   /**
-   * Returns the best x {@link KeywordInfo}s in this collection.
+   * Returns the best x {@link KeywordInfo}s in this collection. Instead of sorting the whole
+   * collection, this keeps the best x {@link KeywordInfo}s seen so far in a bounded heap, which
+   * takes O(n log x) time.
    * 
    * @param count the number of {@link KeywordInfo}s to return (=x)
    * @return the best x {@link KeywordInfo}s
    */
   public KeywordCollection getBest(int count) {
-    List<KeywordInfo> sortedList = getListSortedByScore();
     KeywordCollection bestKeywords = new KeywordCollection(this);
-    for (int i = 0; i < count && i < sortedList.size(); i++) {
-      bestKeywords.add(sortedList.get(i));
+    if (count >= keywords.size()) {
+      for (KeywordInfo keywordInfo : keywords.values()) {
+        bestKeywords.add(keywordInfo);
+      }
+      return bestKeywords;
+    }
+    if (count <= 0) {
+      return bestKeywords;
+    }
+
+    // The head of the heap is the worst of the best keywords found so far.
+    Comparator<KeywordInfo> comparator = new ScoreComparator();
+    PriorityQueue<KeywordInfo> heap =
+        new PriorityQueue<KeywordInfo>(count, Collections.reverseOrder(comparator));
+    for (KeywordInfo keywordInfo : keywords.values()) {
+      if (heap.size() < count) {
+        heap.add(keywordInfo);
+      } else if (comparator.compare(keywordInfo, heap.peek()) < 0) {
+        heap.poll();
+        heap.add(keywordInfo);
+      }
+    }
+
+    for (KeywordInfo keywordInfo : heap) {
+      bestKeywords.add(keywordInfo);
     }
     return bestKeywords;
   }
@@ -174,13 +301,63 @@ public class KeywordCollection extends AdditionalInfoHolder implements Iterable<
    *         collection is empty or the entries are not evaluated yet)
    */
   public double getAverageScore() {
-    double sum = 0;
-    for (KeywordInfo keywordInfo : keywords.values()) {
-      if (keywordInfo.hasScore()) {
-        sum += keywordInfo.getScore();
-      }
+    if (scoredCount == 0) {
+      return Double.NaN;
+    }
+    return scoreSum / scoredCount;
+  }
+
+  /**
+   * Returns the number of {@link KeywordInfo}s contained that have a score.
+   * 
+   * @return the number of {@link KeywordInfo}s contained that have a score
+   */
+  public int getScoredCount() {
+    return scoredCount;
+  }
+
+  /**
+   * Returns the minimum score of the {@link KeywordInfo}s contained (skipping entries without a
+   * score).
+   * 
+   * @return the minimum score ({@link Double#NaN} if no entries are evaluated yet)
+   */
+  public double getMinScore() {
+    if (scoredCount == 0) {
+      return Double.NaN;
     }
-    return sum / keywords.size();
+    updateExtremes();
+    return minScore;
+  }
+
+  /**
+   * Returns the maximum score of the {@link KeywordInfo}s contained (skipping entries without a
+   * score).
+   * 
+   * @return the maximum score ({@link Double#NaN} if no entries are evaluated yet)
+   */
+  public double getMaxScore() {
+    if (scoredCount == 0) {
+      return Double.NaN;
+    }
+    updateExtremes();
+    return maxScore;
+  }
+
+  /**
+   * Returns the (population) variance of the scores of the {@link KeywordInfo}s contained
+   * (skipping entries without a score).
+   * 
+   * @return the variance of the scores ({@link Double#NaN} if no entries are evaluated yet)
+   */
+  public double getScoreVariance() {
+    if (scoredCount == 0) {
+      return Double.NaN;
+    }
+    double average = scoreSum / scoredCount;
+
+    // Rounding errors may lead to slightly negative values for (nearly) equal scores.
+    return Math.max(0, scoreSumOfSquares / scoredCount - average * average);
   }
 
   @Override
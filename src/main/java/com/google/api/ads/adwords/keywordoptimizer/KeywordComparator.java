@@ -18,17 +18,11 @@ import java.util.Comparator;
 
 /**
  * Comparator for comparing {@link KeywordInfo}s by keyword. It uses first the keyword text and then
- * the matchType for comparisons.
+ * the matchType for comparisons (see {@link KeywordKey#compareTo(KeywordKey)}).
  */
 public class KeywordComparator implements Comparator<KeywordInfo> {
   @Override
   public int compare(KeywordInfo o1, KeywordInfo o2) {
-    int compareText = o1.getKeyword().getText().compareTo(o2.getKeyword().getText());
-    if (compareText != 0) {
-      return compareText;
-    }
-
-    return o1.getKeyword().getMatchType().getValue()
-        .compareTo(o2.getKeyword().getMatchType().getValue());
+    return o1.getKeywordKey().compareTo(o2.getKeywordKey());
   }
 }
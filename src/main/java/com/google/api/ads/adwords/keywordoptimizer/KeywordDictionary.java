@@ -0,0 +1,130 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Assigns an int ID to every distinct keyword (text and match type) in use, so that collections
+ * can work on primitive keys instead of hashing and comparing {@link Keyword} beans (whose
+ * {@link Keyword#equals(Object)} and {@link Keyword#hashCode()} are synchronized and walk all
+ * fields). Every keyword is represented by one shared {@link KeywordKey}, which carries its ID.
+ *
+ * <p>Keys are only referenced weakly by the dictionary: a keyword stays in the dictionary as long
+ * as its shared key is used somewhere, which every {@link KeywordInfo} does for its keyword. Once
+ * no collection, cache or other object refers to a keyword anymore, it is dropped by the garbage
+ * collector, so the size of the dictionary follows the keywords in use, no matter how long the
+ * process runs. IDs are assigned in increasing order and never reused (a keyword that is dropped
+ * and used again later gets a new ID), so an ID is only valid while its key is referenced.
+ *
+ * <p>The dictionary never hands out {@link Keyword} beans, so callers cannot change the keywords
+ * of others.
+ */
+public final class KeywordDictionary {
+  private static final KeywordDictionary DEFAULT = new KeywordDictionary();
+
+  private final Interner<KeywordKey> keys;
+  private int nextId;
+
+  /**
+   * Creates a new, empty {@link KeywordDictionary}.
+   */
+  KeywordDictionary() {
+    keys = Interners.newWeakInterner();
+  }
+
+  /**
+   * Returns the dictionary shared by the whole process.
+   */
+  public static KeywordDictionary getDefault() {
+    return DEFAULT;
+  }
+
+  /**
+   * Returns the shared key of the given keyword, assigning an ID if the keyword has none so far.
+   * Only the text and match type of the keyword are taken into account.
+   *
+   * @param keyword the keyword to look up
+   * @return the shared {@link KeywordKey} (with an ID)
+   */
+  public KeywordKey intern(Keyword keyword) {
+    return intern(KeywordKey.of(keyword));
+  }
+
+  /**
+   * Returns the shared key of the given keyword text and match type, assigning an ID if the
+   * keyword has none so far.
+   *
+   * @param text the keyword text
+   * @param matchType the match type
+   * @return the shared {@link KeywordKey} (with an ID)
+   */
+  public KeywordKey intern(String text, KeywordMatchType matchType) {
+    return intern(new KeywordKey(text, matchType == null ? null : matchType.getValue()));
+  }
+
+  /**
+   * Returns the ID of the given keyword without assigning one if the keyword has none so far.
+   * Only the text and match type of the keyword are taken into account.
+   *
+   * @param keyword the keyword to look up
+   * @return the ID of the keyword, or -1 if it has no ID
+   */
+  public int findId(Keyword keyword) {
+    return keys.intern(KeywordKey.of(keyword)).getId();
+  }
+
+  /**
+   * Returns the ID of the given keyword text and match type without assigning one if the keyword
+   * has none so far.
+   *
+   * @param text the keyword text
+   * @param matchType the match type
+   * @return the ID of the keyword, or -1 if it has no ID
+   */
+  public int findId(String text, KeywordMatchType matchType) {
+    // A key only added by this lookup is not referenced by anyone, so it is dropped again.
+    return keys.intern(new KeywordKey(text, matchType == null ? null : matchType.getValue()))
+        .getId();
+  }
+
+  /**
+   * Returns the shared instance of the given key, assigning an ID if necessary.
+   */
+  private KeywordKey intern(KeywordKey key) {
+    KeywordKey shared = keys.intern(key);
+    if (shared.getId() < 0) {
+      assignId(shared);
+    }
+    return shared;
+  }
+
+  /**
+   * Assigns the next ID to the given shared key (unless another thread has done so in the
+   * meantime).
+   */
+  private synchronized void assignId(KeywordKey key) {
+    if (key.getId() >= 0) {
+      return;
+    }
+    if (nextId == Integer.MAX_VALUE) {
+      throw new IllegalStateException("No keyword IDs left");
+    }
+    key.setId(nextId++);
+  }
+}
@@ -26,6 +26,7 @@ import javax.annotation.Nullable;
  */
 public class KeywordInfo {
   private final Keyword keyword;
+  private final KeywordKey keywordKey;
   private final TrafficEstimate estimate;
   private final Double score;
 
@@ -38,6 +39,7 @@ public class KeywordInfo {
    */
   public KeywordInfo(Keyword keyword, @Nullable TrafficEstimate estimate, @Nullable Double score) {
     this.keyword = keyword;
+    this.keywordKey = KeywordDictionary.getDefault().intern(keyword);
     this.estimate = estimate;
     this.score = score;
   }
@@ -49,6 +51,21 @@ public class KeywordInfo {
     return keyword;
   }
 
+  /**
+   * Returns the ID of the keyword (see {@link KeywordDictionary}).
+   */
+  public int getKeywordId() {
+    return keywordKey.getId();
+  }
+
+  /**
+   * Returns the shared, immutable key of the keyword (see {@link KeywordKey}), which also keeps
+   * the keyword in the {@link KeywordDictionary}.
+   */
+  public KeywordKey getKeywordKey() {
+    return keywordKey;
+  }
+
   /**
    * Returns the estimated traffic statistics.
    */
@@ -0,0 +1,177 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+
+import javax.annotation.Nullable;
+
+/**
+ * An immutable identity of a keyword (text and match type) for internal use. In contrast to the
+ * generated {@link Keyword} bean, it has no setters, no type metadata and a 64-bit hash that is
+ * calculated once, so hashing and comparing is cheap and never synchronizes. The match type is
+ * kept as its plain string value, so this class does not depend on the API version; it's only
+ * converted from / to {@link Keyword} where the API is called.
+ *
+ * <p>Every keyword in use has a shared key interned by the {@link KeywordDictionary} (see
+ * {@link KeywordInfo#getKeywordKey()}). Shared keys additionally carry the ID assigned to them by
+ * the dictionary, which is not part of their identity.
+ */
+public final class KeywordKey implements Comparable<KeywordKey> {
+  // Parameters of the 64-bit FNV-1a hash.
+  private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private final String text;
+  private final String matchType;
+  private final long hash;
+
+  // Assigned once by the KeywordDictionary (-1 if none).
+  private volatile int id = -1;
+
+  /**
+   * Creates a new {@link KeywordKey}.
+   *
+   * @param text the keyword text
+   * @param matchType the value of the match type (<code>null</code> if there is none)
+   */
+  public KeywordKey(String text, @Nullable String matchType) {
+    this.text = text;
+    this.matchType = matchType;
+    this.hash = calculateHash(text, matchType);
+  }
+
+  /**
+   * Creates a {@link KeywordKey} for the text and match type of the given {@link Keyword}.
+   *
+   * @param keyword the keyword
+   * @return the key for the keyword
+   */
+  public static KeywordKey of(Keyword keyword) {
+    KeywordMatchType matchType = keyword.getMatchType();
+    return new KeywordKey(keyword.getText(), matchType == null ? null : matchType.getValue());
+  }
+
+  /**
+   * Calculates the 64-bit FNV-1a hash of the text and the match type (separated by a character
+   * that never occurs in either of them).
+   */
+  private static long calculateHash(String text, @Nullable String matchType) {
+    long hash = FNV_OFFSET_BASIS;
+    hash = hash(hash, text);
+    hash = (hash ^ '\0') * FNV_PRIME;
+    return matchType == null ? hash : hash(hash, matchType);
+  }
+
+  private static long hash(long hash, String value) {
+    for (int i = 0; i < value.length(); i++) {
+      hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+    }
+    return hash;
+  }
+
+  /**
+   * Returns the keyword text.
+   */
+  public String getText() {
+    return text;
+  }
+
+  /**
+   * Returns the value of the match type (<code>null</code> if there is none).
+   */
+  @Nullable
+  public String getMatchType() {
+    return matchType;
+  }
+
+  /**
+   * Returns the precalculated 64-bit hash of this key.
+   */
+  public long getHash64() {
+    return hash;
+  }
+
+  /**
+   * Returns the ID assigned by the {@link KeywordDictionary}, or -1 if this key has none (because
+   * it's not the shared instance).
+   */
+  int getId() {
+    return id;
+  }
+
+  /**
+   * Sets the ID of this (shared) key, only called by the {@link KeywordDictionary}.
+   */
+  void setId(int id) {
+    this.id = id;
+  }
+
+  /**
+   * Creates a new {@link Keyword} bean for calling the API.
+   *
+   * @return a new {@link Keyword} with the text and match type of this key
+   */
+  public Keyword toKeyword() {
+    Keyword keyword = new Keyword();
+    keyword.setText(text);
+    keyword.setMatchType(matchType == null ? null : KeywordMatchType.fromValue(matchType));
+    return keyword;
+  }
+
+  /**
+   * Compares by keyword text first and then by match type (keys without match type first), the
+   * same way as the {@link KeywordComparator}.
+   */
+  @Override
+  public int compareTo(KeywordKey other) {
+    int compareText = text.compareTo(other.text);
+    if (compareText != 0 || matchType == other.matchType) {
+      return compareText;
+    }
+    if (matchType == null) {
+      return -1;
+    }
+    if (other.matchType == null) {
+      return 1;
+    }
+    return matchType.compareTo(other.matchType);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof KeywordKey)) {
+      return false;
+    }
+
+    KeywordKey other = (KeywordKey) obj;
+    return hash == other.hash && text.equals(other.text)
+        && (matchType == null ? other.matchType == null : matchType.equals(other.matchType));
+  }
+
+  @Override
+  public int hashCode() {
+    return (int) (hash ^ (hash >>> 32));
+  }
+
+  @Override
+  public String toString() {
+    return matchType == null ? text : text + " (" + matchType + ")";
+  }
+}
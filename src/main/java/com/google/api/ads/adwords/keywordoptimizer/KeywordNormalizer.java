@@ -0,0 +1,101 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+/**
+ * Normalizes and validates plain text keywords locally, before they are sent to any AdWords API
+ * service. Keywords are trimmed, runs of whitespace are collapsed into a single space and all
+ * characters are converted to lower case, so that case and whitespace variants of a keyword end up
+ * as the same {@link com.google.api.ads.adwords.axis.v201509.cm.Keyword}. Keywords that AdWords
+ * would reject anyway (too long, too many words or invalid characters) are dropped.
+ */
+public final class KeywordNormalizer {
+  private static final Logger logger = LoggerFactory.getLogger(KeywordNormalizer.class);
+
+  // Maximum number of characters in a keyword text.
+  public static final int MAX_LENGTH = 80;
+
+  // Maximum number of words in a keyword text.
+  public static final int MAX_WORDS = 10;
+
+  // Characters that are not allowed in keyword texts.
+  private static final Pattern INVALID_CHARACTERS = Pattern.compile("[!@%^*()={};~`<>?\\\\|,]");
+
+  private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+  private KeywordNormalizer() {
+    // Utility class, no instances.
+  }
+
+  /**
+   * Normalizes a single plain text keyword.
+   *
+   * @param text the keyword text
+   * @return the normalized keyword text or <code>null</code> if the keyword is invalid
+   */
+  @Nullable
+  public static String normalize(@Nullable String text) {
+    if (text == null) {
+      return null;
+    }
+
+    String normalized = WHITESPACE.matcher(text.trim()).replaceAll(" ").toLowerCase(Locale.ENGLISH);
+    if (normalized.isEmpty() || normalized.length() > MAX_LENGTH
+        || INVALID_CHARACTERS.matcher(normalized).find()
+        || normalized.split(" ").length > MAX_WORDS) {
+      return null;
+    }
+
+    return normalized;
+  }
+
+  /**
+   * Normalizes a collection of plain text keywords, dropping invalid ones and duplicates.
+   *
+   * @param texts the keyword texts
+   * @return the distinct normalized keyword texts (in the original order)
+   */
+  public static Set<String> normalize(Collection<String> texts) {
+    Set<String> normalizedTexts = new LinkedHashSet<String>();
+    int invalid = 0;
+
+    for (String text : texts) {
+      String normalized = normalize(text);
+      if (normalized != null) {
+        normalizedTexts.add(normalized);
+      } else {
+        invalid++;
+      }
+    }
+
+    if (normalizedTexts.size() < texts.size()) {
+      logger.info("Dropped " + invalid + " invalid and "
+          + (texts.size() - invalid - normalizedTexts.size()) + " duplicate keywords");
+    }
+
+    return normalizedTexts;
+  }
+}
@@ -16,6 +16,7 @@ package com.google.api.ads.adwords.keywordoptimizer;
 
 import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
 import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.api.ads.adwords.keywordoptimizer.SeedFileReader.LineHandler;
 import com.google.api.ads.common.lib.conf.ConfigurationLoadException;
 import com.google.api.ads.common.lib.exception.OAuthException;
 import com.google.api.ads.common.lib.exception.ValidationException;
@@ -44,7 +45,7 @@ import java.lang.reflect.Constructor;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Main class for this tool, taking command line parameters and starting the optimization process
@@ -133,11 +134,16 @@ public class KeywordOptimizer {
         AlternativesFinder.class, KeywordOptimizerProperty.AlternativesFinderClass, context);
     TrafficEstimator estimator = createObjectBasedOnProperty(
         TrafficEstimator.class, KeywordOptimizerProperty.EstimatorClass, context);
+    PersistentEstimator persistentEstimator = createPersistentEstimator(estimator, context);
+    if (persistentEstimator != null) {
+      estimator = persistentEstimator;
+    }
     ScoreCalculator scoreCalculator = createObjectBasedOnProperty(
         ScoreCalculator.class, KeywordOptimizerProperty.ScoreCalculatorClass, context);
 
-    Evaluator evaluator =
-        new EstimatorBasedEvaluator(new CachedEstimator(estimator), scoreCalculator);
+    CachedEstimator cachedEstimator =
+        new CachedEstimator(new CoalescingEstimator(estimator), context);
+    Evaluator evaluator = new EstimatorBasedEvaluator(cachedEstimator, scoreCalculator);
 
     RoundStrategy roundStrategy = createObjectBasedOnProperty(
         RoundStrategy.class, KeywordOptimizerProperty.RoundStrategyClass, context);
@@ -145,9 +151,17 @@ public class KeywordOptimizer {
     Optimizer optimizer =
         new Optimizer(seedGenerator, alternativesFinder, evaluator, roundStrategy);
 
-    logHeadline("Optimization");
-    KeywordCollection bestKeywords = optimizer.optimize();
-    output(cmdLine, bestKeywords);
+    try {
+      logHeadline("Optimization");
+      KeywordCollection bestKeywords = optimizer.optimize();
+      logger.info("Skipped " + cachedEstimator.getNegativeHitCount()
+          + " estimations of keywords known to have no estimate");
+      output(cmdLine, bestKeywords);
+    } finally {
+      if (persistentEstimator != null) {
+        persistentEstimator.close();
+      }
+    }
   }
 
   /**
@@ -178,7 +192,7 @@ public class KeywordOptimizer {
     OptionBuilder.withLongOpt("seed-keywords");
     OptionBuilder.withDescription(
         "Use the given keywords (separated by spaces) as a seed for the optimization."
-        + "\nNote: Only one seed-* option is allowed.");
+        + "\nNote: Several seed-* options can be used.");
     OptionBuilder.hasArg(true);
     OptionBuilder.hasArgs(Option.UNLIMITED_VALUES);
     OptionBuilder.withArgName("keywords");
@@ -187,7 +201,7 @@ public class KeywordOptimizer {
     OptionBuilder.withLongOpt("seed-keywords-file");
     OptionBuilder.withDescription(
         "Use the keywords from the given file (one keyword per row) as a seed for the optimization."
-        + "\nNote: Only one seed-* option is allowed.");
+        + "\nNote: Several seed-* options can be used.");
     OptionBuilder.hasArg(true);
     OptionBuilder.withArgName("file");
     options.addOption(OptionBuilder.create("skf"));
@@ -195,7 +209,7 @@ public class KeywordOptimizer {
     OptionBuilder.withLongOpt("seed-terms");
     OptionBuilder.withDescription(
         "Use the given search terms (separated by spaces) as a seed for the optimization."
-        + "\nNote: Only one seed-* option is allowed.");
+        + "\nNote: Several seed-* options can be used.");
     OptionBuilder.hasArg(true);
     OptionBuilder.hasArgs(Option.UNLIMITED_VALUES);
     OptionBuilder.withArgName("terms");
@@ -204,7 +218,7 @@ public class KeywordOptimizer {
     OptionBuilder.withLongOpt("seed-terms-file");
     OptionBuilder.withDescription(
         "Use the search terms from the given file (one keyword per row) as a seed "
-        + "for the optimization.\nNote: Only one seed-* option is allowed.");
+        + "for the optimization.\nNote: Several seed-* options can be used.");
     OptionBuilder.hasArg(true);
     OptionBuilder.withArgName("file");
     options.addOption(OptionBuilder.create("stf"));
@@ -212,7 +226,7 @@ public class KeywordOptimizer {
     OptionBuilder.withLongOpt("seed-urls");
     OptionBuilder.withDescription(
         "Use the given urls (separated by spaces) to extract keywords as a seed for "
-        + "the optimization.\nNote: Only one seed-* option is allowed.");
+        + "the optimization.\nNote: Several seed-* options can be used.");
     OptionBuilder.hasArg(true);
     OptionBuilder.hasArgs(Option.UNLIMITED_VALUES);
     OptionBuilder.withArgName("urls");
@@ -221,7 +235,7 @@ public class KeywordOptimizer {
     OptionBuilder.withLongOpt("seed-urls-file");
     OptionBuilder.withDescription(
         "Use the urls from the given file (one url per row) to extract keywords as a seed "
-        + "for the optimization.\nNote: Only one seed-* option is allowed.");
+        + "for the optimization.\nNote: Several seed-* options can be used.");
     OptionBuilder.hasArg(true);
     OptionBuilder.withArgName("file");
     options.addOption(OptionBuilder.create("suf"));
@@ -229,7 +243,7 @@ public class KeywordOptimizer {
     OptionBuilder.withLongOpt("seed-category");
     OptionBuilder.withDescription(
         "Use the given category (ID as defined @ https://goo.gl/xUEr6s) to get keywords as a seed "
-        + "for the optimization.\nNote: Only one seed-* option is allowed.");
+        + "for the optimization.\nNote: Several seed-* options can be used.");
     OptionBuilder.hasArg(true);
     OptionBuilder.withArgName("id");
     options.addOption(OptionBuilder.create("sc"));
@@ -407,7 +421,8 @@ public class KeywordOptimizer {
   }
 
   /**
-   * Creates the seed generator based on the command line options.
+   * Creates the seed generator based on the command line options. If several seed options are
+   * specified, their seed generators are combined (see {@link CompositeSeedGenerator}).
    *
    * @param cmdLine the parsed command line parameters
    * @param context holding shared objects during the optimization process
@@ -416,8 +431,30 @@ public class KeywordOptimizer {
    */
   private static SeedGenerator getSeedGenerator(CommandLine cmdLine, OptimizationContext context)
       throws KeywordOptimizerException {
-    Option seedOption = getOnlySeedOption(cmdLine);
+    List<SeedGenerator> seedGenerators = new ArrayList<SeedGenerator>();
+    for (Option seedOption : getSeedOptions(cmdLine)) {
+      seedGenerators.add(getSeedGenerator(cmdLine, seedOption, context));
+    }
+
+    if (seedGenerators.size() == 1) {
+      return seedGenerators.get(0);
+    }
 
+    return new CompositeSeedGenerator(seedGenerators);
+  }
+
+  /**
+   * Creates the seed generator for a single seed option.
+   *
+   * @param cmdLine the parsed command line parameters
+   * @param seedOption the 'seed' option to create the seed generator for
+   * @param context holding shared objects during the optimization process
+   * @return a {@link SeedGenerator} object
+   * @throws KeywordOptimizerException in case of an error constructing the seed generator
+   */
+  private static SeedGenerator getSeedGenerator(
+      CommandLine cmdLine, Option seedOption, OptimizationContext context)
+      throws KeywordOptimizerException {
     if ("sk".equals(seedOption.getOpt())) {
       String[] keywords = cmdLine.getOptionValues("sk");
 
@@ -429,13 +466,13 @@ public class KeywordOptimizer {
 
       return seedGenerator;
     } else if ("skf".equals(seedOption.getOpt())) {
-      List<String> keywords = loadFromFile(cmdLine.getOptionValue("skf"));
-
-      SimpleSeedGenerator seedGenerator = new SimpleSeedGenerator();
-      for (String keyword : keywords) {
-        log("Using seed keyword: " + keyword);
-        seedGenerator.addKeyword(keyword);
-      }
+      final SimpleSeedGenerator seedGenerator = new SimpleSeedGenerator();
+      loadFromFile(cmdLine.getOptionValue("skf"), "seed keywords", new LineHandler() {
+        @Override
+        public void handle(String line) {
+          seedGenerator.addKeyword(line);
+        }
+      });
 
       return seedGenerator;
     } else if ("st".equals(seedOption.getOpt())) {
@@ -449,13 +486,14 @@ public class KeywordOptimizer {
 
       return seedGenerator;
     } else if ("stf".equals(seedOption.getOpt())) {
-      List<String> terms = loadFromFile(cmdLine.getOptionValue("skf"));
-
-      TisSearchTermsSeedGenerator seedGenerator = new TisSearchTermsSeedGenerator(context, null);
-      for (String term : terms) {
-        log("Using seed serach term: " + term);
-        seedGenerator.addSearchTerm(term);
-      }
+      final TisSearchTermsSeedGenerator seedGenerator =
+          new TisSearchTermsSeedGenerator(context, null);
+      loadFromFile(cmdLine.getOptionValue("stf"), "seed search terms", new LineHandler() {
+        @Override
+        public void handle(String line) {
+          seedGenerator.addSearchTerm(line);
+        }
+      });
 
       return seedGenerator;
     } else if ("su".equals(seedOption.getOpt())) {
@@ -469,13 +507,13 @@ public class KeywordOptimizer {
 
       return seedGenerator;
     } else if ("suf".equals(seedOption.getOpt())) {
-      List<String> urls = loadFromFile(cmdLine.getOptionValue("suf"));
-
-      TisUrlSeedGenerator seedGenerator = new TisUrlSeedGenerator(context, null);
-      for (String url : urls) {
-        log("Using seed url: " + url);
-        seedGenerator.addUrl(url);
-      }
+      final TisUrlSeedGenerator seedGenerator = new TisUrlSeedGenerator(context, null);
+      loadFromFile(cmdLine.getOptionValue("suf"), "seed urls", new LineHandler() {
+        @Override
+        public void handle(String line) {
+          seedGenerator.addUrl(line);
+        }
+      });
 
       return seedGenerator;
     } else if ("sc".equals(seedOption.getOpt())) {
@@ -491,32 +529,27 @@ public class KeywordOptimizer {
   }
 
   /**
-   * Returns the only specified 'seed' option or an exception if no or more than one is specified.
+   * Returns all specified 'seed' options or an exception if none is specified.
    *
    * @param cmdLine the parsed command line parameters
-   * @return the 'seed' {@link Option}
-   * @throws KeywordOptimizerException in case there is no or more than one 'seed' parameter
-   *         specified
+   * @return the 'seed' {@link Option}s
+   * @throws KeywordOptimizerException in case there is no 'seed' parameter specified
    */
-  private static Option getOnlySeedOption(CommandLine cmdLine) throws KeywordOptimizerException {
-    Option seedOption = null;
+  private static List<Option> getSeedOptions(CommandLine cmdLine)
+      throws KeywordOptimizerException {
+    List<Option> seedOptions = new ArrayList<Option>();
 
     for (Option option : cmdLine.getOptions()) {
       if (option.getOpt().startsWith("s")) {
-        if (seedOption != null) {
-          throw new KeywordOptimizerException("Only one 'seed' option is allowed "
-              + "(remove either " + seedOption.getOpt() + " or " + option.getOpt() + ")");
-        }
-
-        seedOption = option;
+        seedOptions.add(option);
       }
     }
 
-    if (seedOption == null) {
+    if (seedOptions.isEmpty()) {
       throw new KeywordOptimizerException("You must specify a 'seed' parameter");
     }
 
-    return seedOption;
+    return seedOptions;
   }
 
   /**
@@ -671,38 +704,53 @@ public class KeywordOptimizer {
   }
 
   /**
-   * Reads settings (keywords / urls / serach terms) line-by-line from a file.
+   * Wraps the given estimator into a {@link PersistentEstimator} if an estimate store is
+   * specified in the properties file.
    *
-   * @param fileName the name of the file to read from
-   * @return a {@link List} of strings line-by-line
-   * @throws KeywordOptimizerException in case there is a problem reading the file
+   * @param estimator the estimator to be wrapped
+   * @param context holding shared objects during the optimization process
+   * @return the {@link PersistentEstimator} or <code>null</code> if no store is specified
+   * @throws KeywordOptimizerException in case there is a problem opening the estimate store
    */
-  private static List<String> loadFromFile(String fileName) throws KeywordOptimizerException {
-    List<String> out = new ArrayList<String>();
+  private static PersistentEstimator createPersistentEstimator(
+      TrafficEstimator estimator, OptimizationContext context) throws KeywordOptimizerException {
+    Configuration config = context.getConfiguration();
+    String storePath = config.getString(KeywordOptimizerProperty.EstimateStoreFile.getName());
+    if (storePath == null || storePath.isEmpty()) {
+      return null;
+    }
 
-    Scanner scan = null;
-    try {
-      scan = new Scanner(new File(fileName));
-      while (scan.hasNextLine()) {
-        String line = scan.nextLine().trim();
+    long expireAfterHours =
+        config.getLong(KeywordOptimizerProperty.EstimateStoreExpireAfterHours.getName(), 24);
+    log("Using estimate store: " + storePath);
 
-        // Ignore comment lines.
-        if (line.startsWith("#")) {
-          continue;
-        }
-
-        out.add(line);
-      }
-      return out;
+    try {
+      PersistentEstimateStore store =
+          new PersistentEstimateStore(storePath, TimeUnit.HOURS.toMillis(expireAfterHours));
+      return new PersistentEstimator(estimator, store);
     } catch (IOException e) {
-      throw new KeywordOptimizerException("Error loading file '" + fileName + "'", e);
-    } finally {
-      if (scan != null) {
-        scan.close();
-      }
+      throw new KeywordOptimizerException("Error opening estimate store '" + storePath + "'", e);
     }
   }
 
+  /**
+   * Reads settings (keywords / urls / search terms) line-by-line from a file and logs a summary.
+   *
+   * @param fileName the name of the file to read from
+   * @param description what the lines of the file are used as (for logging)
+   * @param handler the handler for the distinct lines of the file
+   * @throws KeywordOptimizerException in case there is a problem reading the file
+   */
+  private static void loadFromFile(String fileName, String description, LineHandler handler)
+      throws KeywordOptimizerException {
+    SeedFileReader reader = new SeedFileReader(fileName);
+    int count = reader.read(handler);
+
+    log("Using " + count + " " + description + " from file '" + fileName + "' ("
+        + reader.getLineCount() + " lines, " + reader.getCommentCount() + " comments, "
+        + reader.getDuplicateCount() + " duplicates)");
+  }
+
   /**
    * Helper method to create an object based on a class name specified in the properties file. Note
    * that all classes instantiated here must provide an empty constructor.
@@ -21,14 +21,33 @@ package com.google.api.ads.adwords.keywordoptimizer;
 public enum KeywordOptimizerProperty {
   
   AlternativesFinderClass("optimizer.alternativesFinder"),
+  AlternativesFinderParallelism("optimizer.alternativesFinder.parallelism"),
+  AlternativesFinderMaxIdeas("optimizer.alternativesFinder.maxIdeas"),
+  AlternativesFinderCacheSize("optimizer.alternativesFinder.cacheSize"),
   EstimatorClass("optimizer.estimator"),
+  EstimatorBatchSize("optimizer.estimator.batchSize"),
+  EstimatorMinBatchSize("optimizer.estimator.minBatchSize"),
+  EstimatorMaxBatchSize("optimizer.estimator.maxBatchSize"),
+  EstimatorTargetLatency("optimizer.estimator.targetLatency"),
+  EstimatorParallelism("optimizer.estimator.parallelism"),
   ScoreCalculatorClass("optimizer.scoreCalculator"),
   ScoreCalculatorFormula("optimizer.scoreCalculator.formula"),
   RoundStrategyClass("optimizer.roundStrategy"),
   RoundStrategyMaxSteps("optimizer.roundStrategy.maxSteps"),
   RoundStrategyMinImprovementBetweenSteps("optimizer.roundStrategy.minImprovement"),
   RoundStrategyMaxPopulation("optimizer.roundStrategy.maxPopulation"),
-  RoundStrategyReplicateBest("optimizer.roundStrategy.replicateBest");
+  RoundStrategyReplicateBest("optimizer.roundStrategy.replicateBest"),
+  RoundStrategyColumnarPopulation("optimizer.roundStrategy.columnarPopulation"),
+  EstimateCacheMaxSize("optimizer.estimateCache.maxSize"),
+  EstimateCacheExpireAfterMinutes("optimizer.estimateCache.expireAfterMinutes"),
+  EstimateCacheNegativeExpireAfterMinutes("optimizer.estimateCache.negativeExpireAfterMinutes"),
+  EstimateStoreFile("optimizer.estimateStore.file"),
+  EstimateStoreExpireAfterHours("optimizer.estimateStore.expireAfterHours"),
+  SeedGeneratorMaxIdeas("optimizer.seedGenerator.maxIdeas"),
+  SeedGeneratorGroupSize("optimizer.seedGenerator.groupSize"),
+  SeedGeneratorParallelism("optimizer.seedGenerator.parallelism"),
+  RateLimit("optimizer.rateLimit"),
+  RateLimitMaxRetries("optimizer.rateLimit.maxRetries");
   
   private final String propertyName;
 
@@ -24,10 +24,17 @@ import com.google.api.ads.adwords.axis.v201509.o.LanguageSearchParameter;
 import com.google.api.ads.adwords.axis.v201509.o.LocationSearchParameter;
 import com.google.api.ads.adwords.axis.v201509.o.SearchParameter;
 import com.google.api.ads.adwords.axis.v201509.o.StatsEstimate;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Utility functions (math, strings, ...) for various other classes in this project.
@@ -346,4 +353,54 @@ public class KeywordOptimizerUtil {
     
     return parameters;
   }
+
+  /**
+   * Creates a {@link ThreadFactory} for daemon threads, so that background work never keeps the
+   * JVM from exiting once the optimization is done.
+   *
+   * @param nameFormat format for the thread names (see {@link String#format}), e.g. "worker-%d"
+   * @return a factory for creating named daemon threads
+   */
+  public static ThreadFactory createThreadFactory(String nameFormat) {
+    return new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build();
+  }
+
+  /**
+   * Creates an executor for sending requests concurrently, using daemon threads. For a parallelism
+   * of 1 (or less), requests are simply executed by the calling thread.
+   *
+   * @param parallelism maximum number of requests sent concurrently
+   * @param nameFormat format for the thread names (see {@link String#format}), e.g. "worker-%d"
+   * @return the executor
+   */
+  public static ListeningExecutorService createExecutor(int parallelism, String nameFormat) {
+    if (parallelism <= 1) {
+      return MoreExecutors.newDirectExecutorService();
+    }
+
+    return MoreExecutors.listeningDecorator(
+        Executors.newFixedThreadPool(parallelism, createThreadFactory(nameFormat)));
+  }
+
+  /**
+   * Waits for the result of a future, passing on a {@link KeywordOptimizerException} it failed
+   * with as is and wrapping any other failure.
+   *
+   * @param future the future to wait for
+   * @return the result of the future
+   * @throws KeywordOptimizerException in case the future failed or waiting was interrupted
+   */
+  public static <T> T waitFor(Future<T> future) throws KeywordOptimizerException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new KeywordOptimizerException("Interrupted while waiting for a result", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof KeywordOptimizerException) {
+        throw (KeywordOptimizerException) e.getCause();
+      }
+      throw new KeywordOptimizerException("Problem while waiting for a result", e.getCause());
+    }
+  }
 }
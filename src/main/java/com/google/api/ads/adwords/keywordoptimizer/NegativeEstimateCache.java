@@ -0,0 +1,110 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers keywords (by {@link EstimateCacheKey}) for which no usable {@link TrafficEstimate}
+ * could be obtained, either because estimating them failed or because the estimate contained no
+ * data. This way these keywords are not estimated again in every round. Entries expire after
+ * their own time, independent of the cache for actual estimates, so that keywords are retried
+ * once in a while.
+ */
+public class NegativeEstimateCache {
+  // Number of independently locked segments of the cache.
+  private static final int CONCURRENCY_LEVEL = 8;
+
+  private final Cache<EstimateCacheKey, Boolean> cache;
+  private final AtomicLong hitCount;
+
+  /**
+   * Creates a new {@link NegativeEstimateCache}.
+   *
+   * @param maxSize maximum number of keywords to remember
+   * @param expireAfterMinutes time after which keywords are estimated again (0 for no expiration)
+   */
+  public NegativeEstimateCache(long maxSize, long expireAfterMinutes) {
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder()
+        .maximumSize(maxSize)
+        .concurrencyLevel(CONCURRENCY_LEVEL);
+    if (expireAfterMinutes > 0) {
+      builder.expireAfterWrite(expireAfterMinutes, TimeUnit.MINUTES);
+    }
+    cache = builder.build();
+    hitCount = new AtomicLong();
+  }
+
+  /**
+   * Checks whether a keyword is known to have no estimate (and counts it as a saved estimation if
+   * so).
+   *
+   * @param key the key of the keyword
+   * @return <code>true</code> if the keyword does not need to be estimated again
+   */
+  public boolean contains(EstimateCacheKey key) {
+    if (cache.getIfPresent(key) != null) {
+      hitCount.incrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Remembers a keyword that has no estimate.
+   *
+   * @param key the key of the keyword
+   */
+  public void put(EstimateCacheKey key) {
+    cache.put(key, Boolean.TRUE);
+  }
+
+  /**
+   * Returns the number of keywords currently remembered.
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * Returns the keywords currently remembered, as a read-only view.
+   */
+  public Set<EstimateCacheKey> getKeys() {
+    return Collections.unmodifiableSet(cache.asMap().keySet());
+  }
+
+  /**
+   * Returns the number of keyword estimations saved so far.
+   */
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  /**
+   * Checks whether a {@link TrafficEstimate} contains any data.
+   *
+   * @param estimate the estimate to check
+   * @return <code>true</code> if the minimum or maximum statistics contain at least one value
+   */
+  public static boolean hasData(TrafficEstimate estimate) {
+    return estimate != null && estimate.hasData();
+  }
+}
@@ -16,16 +16,27 @@ package com.google.api.ads.adwords.keywordoptimizer;
 
 import org.apache.commons.configuration.Configuration;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
 /**
  * This class holds shared objects during the optimization projects. 
  */
 public class OptimizationContext {
+  // Default maximum number of calls per second to a single service.
+  public static final double DEFAULT_RATE_LIMIT = 5;
+
+  // Default maximum number of retries after rate exceeded errors.
+  public static final int DEFAULT_RATE_LIMIT_MAX_RETRIES = 5;
+
   private Configuration configuration;
   private AdWordsApiUtil adwordsApiUtil;
+  private final ConcurrentMap<String, ApiRateLimiter> rateLimiters;
 
   public OptimizationContext(Configuration configuration, AdWordsApiUtil adwordsApiUtil) {
     this.configuration = configuration;
     this.adwordsApiUtil = adwordsApiUtil;
+    this.rateLimiters = new ConcurrentHashMap<String, ApiRateLimiter>();
   }
 
   public AdWordsApiUtil getAdwordsApiUtil() {
@@ -35,4 +46,35 @@ public class OptimizationContext {
   public Configuration getConfiguration() {
     return configuration;
   }
+
+  /**
+   * Returns the rate limiter shared by all calls to the given service (for the client customer id
+   * of the current session). The rate is configured per service, e.g.
+   * "optimizer.rateLimit.TrafficEstimatorService" for the {@code TrafficEstimatorService}.
+   *
+   * @param serviceInterface the interface of the service
+   * @return the rate limiter for the service
+   */
+  public ApiRateLimiter getRateLimiter(Class<?> serviceInterface) {
+    String service = serviceInterface.getSimpleName().replaceFirst("Interface$", "");
+    String clientCustomerId = adwordsApiUtil != null && adwordsApiUtil.getSession() != null
+        ? adwordsApiUtil.getSession().getClientCustomerId() : null;
+    String key = service + "/" + clientCustomerId;
+
+    ApiRateLimiter rateLimiter = rateLimiters.get(key);
+    if (rateLimiter == null) {
+      rateLimiter = new ApiRateLimiter(service,
+          configuration.getDouble(
+              KeywordOptimizerProperty.RateLimit.getName() + "." + service, DEFAULT_RATE_LIMIT),
+          configuration.getInt(KeywordOptimizerProperty.RateLimitMaxRetries.getName(),
+              DEFAULT_RATE_LIMIT_MAX_RETRIES),
+          ApiRateLimiter.DEFAULT_BASE_BACKOFF);
+
+      ApiRateLimiter existing = rateLimiters.putIfAbsent(key, rateLimiter);
+      if (existing != null) {
+        rateLimiter = existing;
+      }
+    }
+    return rateLimiter;
+  }
 }
@@ -0,0 +1,601 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.api.ads.adwords.axis.v201509.o.StatsEstimate;
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+import javax.annotation.Nullable;
+
+/**
+ * Stores {@link TrafficEstimate}s on disk so that they survive across runs. The store consists of
+ * two files:
+ * <ul>
+ *   <li>An append-only log (<code>.log</code>) holding one record per stored estimate. Records are
+ * never changed, a newer record for the same key simply supersedes the old one.</li>
+ *   <li>A memory-mapped hash index (<code>.idx</code>) mapping the 64-bit hash of each key to the
+ * position of its latest record in the log.</li>
+ * </ul>
+ * A lookup therefore costs one probe in the mapped index and one read from the log. Entries older
+ * than a given time to live are treated as missing. As superseded and expired records are never
+ * removed from the log, it should be compacted from time to time using {@link #compact()}.
+ *
+ * <p>If the index is missing or does not cover the whole log (for instance after a crash), it is
+ * rebuilt from the log when opening the store. Compaction keeps the previous log as a backup
+ * (<code>.bak</code>) until the compacted one is in place, so an interrupted compaction never loses
+ * the log either.
+ *
+ * <p>A store may only be opened by one instance at a time, which is enforced by a lock on a
+ * separate <code>.lock</code> file.
+ */
+public class PersistentEstimateStore {
+  private static final Logger logger = LoggerFactory.getLogger(PersistentEstimateStore.class);
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+  private static final int MAGIC = 0x4b4f4553; // "KOES"
+  private static final int VERSION = 1;
+
+  // Header: magic, version, capacity, size, record count (ints) and indexed log length (long).
+  private static final int HEADER_SIZE = 32;
+  private static final int HEADER_CAPACITY = 8;
+  private static final int HEADER_SIZE_FIELD = 12;
+  private static final int HEADER_RECORDS = 16;
+  private static final int HEADER_INDEXED_LENGTH = 20;
+
+  // Each slot holds the key hash (0 for empty slots) and the position of the record in the log.
+  private static final int SLOT_SIZE = 16;
+  private static final int INITIAL_CAPACITY = 1 << 12;
+  private static final double MAX_LOAD_FACTOR = 0.7;
+
+  private static final int FLAG_AVERAGE_CPC = 1;
+  private static final int FLAG_AVERAGE_POSITION = 1 << 1;
+  private static final int FLAG_CLICKS = 1 << 2;
+  private static final int FLAG_CTR = 1 << 3;
+  private static final int FLAG_IMPRESSIONS = 1 << 4;
+  private static final int FLAG_TOTAL_COST = 1 << 5;
+
+  private final File logFile;
+  private final File indexFile;
+  private final File backupFile;
+  private final File lockFile;
+  private final long timeToLiveMillis;
+
+  private RandomAccessFile lockAccess;
+  private FileLock lock;
+
+  private RandomAccessFile log;
+  private FileChannel logChannel;
+  private long logLength;
+
+  private RandomAccessFile index;
+  private MappedByteBuffer slots;
+  private int capacity;
+  private int size;
+  private int records;
+
+  /**
+   * Opens (or creates) a store at the given location.
+   *
+   * @param basePath path of the store, used as a prefix for the log and index files
+   * @param timeToLiveMillis time after which stored estimates are treated as missing (0 for no
+   *                         expiration)
+   * @throws IOException in case of an error opening the store files or if the store is already
+   *                     opened by someone else
+   */
+  public PersistentEstimateStore(String basePath, long timeToLiveMillis) throws IOException {
+    this.logFile = new File(basePath + ".log");
+    this.indexFile = new File(basePath + ".idx");
+    this.backupFile = new File(basePath + ".bak");
+    this.lockFile = new File(basePath + ".lock");
+    this.timeToLiveMillis = timeToLiveMillis;
+
+    open();
+  }
+
+  /**
+   * Returns the stored estimate for the given key.
+   *
+   * @param key the key of the estimate
+   * @return the stored estimate or <code>null</code> if there is none or it has expired
+   * @throws IOException in case of an error reading from the store
+   */
+  @Nullable
+  public synchronized TrafficEstimate get(EstimateCacheKey key) throws IOException {
+    String keyString = toKeyString(key);
+    int slot = findSlot(hash(keyString));
+    if (slots.getLong(slotPosition(slot)) == 0) {
+      return null;
+    }
+
+    long position = slots.getLong(slotPosition(slot) + 8);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(readRecord(position)));
+
+    long writtenAt = in.readLong();
+    if (isExpired(writtenAt)) {
+      return null;
+    }
+
+    // Guard against (very unlikely) collisions of the 64-bit hash.
+    if (!keyString.equals(in.readUTF())) {
+      return null;
+    }
+
+    StatsEstimate min = readStats(in);
+    StatsEstimate max = readStats(in);
+    return new TrafficEstimate(min, max);
+  }
+
+  /**
+   * Stores the estimate for the given key, replacing any previously stored one.
+   *
+   * @param key the key of the estimate
+   * @param estimate the estimate to be stored
+   * @throws IOException in case of an error writing to the store
+   */
+  public synchronized void put(EstimateCacheKey key, TrafficEstimate estimate) throws IOException {
+    String keyString = toKeyString(key);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.writeLong(System.currentTimeMillis());
+    out.writeUTF(keyString);
+    writeStats(out, estimate.getMin());
+    writeStats(out, estimate.getMax());
+    out.flush();
+
+    long position = appendRecord(bytes.toByteArray());
+    records++;
+    index(hash(keyString), position);
+    writeHeader();
+  }
+
+  /**
+   * Returns the number of distinct keys in the store (including expired ones, which are only
+   * dropped by {@link #compact()}).
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  /**
+   * Returns the number of records in the log, including superseded ones.
+   */
+  public synchronized int getRecordCount() {
+    return records;
+  }
+
+  /**
+   * Rewrites the log so that it only contains the latest, non-expired record of each key and
+   * rebuilds the index accordingly.
+   *
+   * @throws IOException in case of an error rewriting the store files
+   */
+  public synchronized void compact() throws IOException {
+    File compactedFile = new File(logFile.getPath() + ".tmp");
+    RandomAccessFile compacted = new RandomAccessFile(compactedFile, "rw");
+    compacted.setLength(0);
+
+    long[] hashes = new long[size];
+    long[] positions = new long[size];
+    int live = 0;
+
+    try {
+      FileChannel compactedChannel = compacted.getChannel();
+      long compactedLength = 0;
+
+      for (int slot = 0; slot < capacity; slot++) {
+        long hash = slots.getLong(slotPosition(slot));
+        if (hash == 0) {
+          continue;
+        }
+
+        byte[] record = readRecord(slots.getLong(slotPosition(slot) + 8));
+        long writtenAt = new DataInputStream(new ByteArrayInputStream(record)).readLong();
+        if (isExpired(writtenAt)) {
+          continue;
+        }
+
+        hashes[live] = hash;
+        positions[live] = compactedLength;
+        live++;
+
+        compactedLength += writeRecord(compactedChannel, compactedLength, record);
+      }
+      compactedChannel.force(false);
+    } finally {
+      compacted.close();
+    }
+
+    // Invalidate the index first, it must not be used with the compacted log if we get
+    // interrupted before it is rebuilt.
+    slots.putInt(0, 0);
+    slots.force();
+
+    int before = records;
+    logChannel.close();
+    log.close();
+    if (!logFile.renameTo(backupFile)) {
+      throw new IOException("Cannot move '" + logFile + "' to '" + backupFile + "'");
+    }
+    if (!compactedFile.renameTo(logFile)) {
+      throw new IOException("Cannot replace '" + logFile + "' by its compacted version");
+    }
+    if (!backupFile.delete()) {
+      logger.warn("Cannot delete '" + backupFile + "'");
+    }
+    openLog();
+
+    clearIndex(capacity);
+    for (int i = 0; i < live; i++) {
+      index(hashes[i], positions[i]);
+    }
+    records = live;
+    writeHeader();
+
+    logger.info("Compacted estimate store from " + before + " to " + live + " records");
+  }
+
+  /**
+   * Closes the store, writing all pending changes to disk.
+   *
+   * @throws IOException in case of an error closing the store files
+   */
+  public synchronized void close() throws IOException {
+    writeHeader();
+    slots.force();
+    logChannel.force(false);
+
+    logChannel.close();
+    log.close();
+    index.close();
+
+    lock.release();
+    lockAccess.close();
+  }
+
+  /**
+   * Locks the store, recovers the log from an interrupted compaction and opens the log and index
+   * files, rebuilding the index from the log if necessary.
+   */
+  private void open() throws IOException {
+    lockAccess = new RandomAccessFile(lockFile, "rw");
+    try {
+      lock = lockAccess.getChannel().tryLock();
+    } catch (OverlappingFileLockException e) {
+      lock = null;
+    }
+    if (lock == null) {
+      lockAccess.close();
+      throw new IOException("Estimate store '" + logFile + "' is already in use");
+    }
+
+    if (backupFile.exists()) {
+      // Compaction got interrupted: either the compacted log is in place already and the backup is
+      // obsolete, or the backup is the only complete log.
+      if (logFile.exists()) {
+        if (!backupFile.delete()) {
+          throw new IOException("Cannot delete '" + backupFile + "'");
+        }
+      } else if (!backupFile.renameTo(logFile)) {
+        throw new IOException("Cannot restore '" + logFile + "' from '" + backupFile + "'");
+      }
+    }
+
+    openLog();
+
+    index = new RandomAccessFile(indexFile, "rw");
+    boolean valid = false;
+    if (index.length() >= HEADER_SIZE) {
+      MappedByteBuffer header =
+          index.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+      int existingCapacity = header.getInt(HEADER_CAPACITY);
+      valid = header.getInt(0) == MAGIC && header.getInt(4) == VERSION
+          && index.length() == HEADER_SIZE + (long) existingCapacity * SLOT_SIZE
+          && header.getLong(HEADER_INDEXED_LENGTH) <= logLength;
+
+      if (valid) {
+        capacity = existingCapacity;
+        slots = map(capacity);
+        size = slots.getInt(HEADER_SIZE_FIELD);
+        records = slots.getInt(HEADER_RECORDS);
+        indexLog(slots.getLong(HEADER_INDEXED_LENGTH));
+      }
+    }
+
+    if (!valid) {
+      clearIndex(INITIAL_CAPACITY);
+      records = 0;
+      indexLog(0);
+    }
+
+    logger.info("Opened estimate store '" + logFile + "' with " + size + " estimates");
+  }
+
+  /**
+   * Opens the log file for reading and appending.
+   */
+  private void openLog() throws IOException {
+    log = new RandomAccessFile(logFile, "rw");
+    logChannel = log.getChannel();
+    logLength = log.length();
+  }
+
+  /**
+   * Adds all records of the log starting at the given position to the index. A truncated record at
+   * the end of the log (from an interrupted write) is dropped.
+   */
+  private void indexLog(long from) throws IOException {
+    long position = from;
+    ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+
+    while (position + 4 <= logLength) {
+      lengthBuffer.clear();
+      readFully(lengthBuffer, position);
+      int length = lengthBuffer.getInt(0);
+      if (length < 0 || position + 4 + length > logLength) {
+        break;
+      }
+
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(readRecord(position)));
+      in.readLong();
+      index(hash(in.readUTF()), position);
+      records++;
+
+      position += 4 + length;
+    }
+
+    if (position < logLength) {
+      logger.warn("Dropping incomplete record at the end of '" + logFile + "'");
+      logChannel.truncate(position);
+      logLength = position;
+    }
+    writeHeader();
+  }
+
+  /**
+   * Maps the index file for the given capacity.
+   */
+  private MappedByteBuffer map(int newCapacity) throws IOException {
+    long length = HEADER_SIZE + (long) newCapacity * SLOT_SIZE;
+    return index.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+  }
+
+  /**
+   * Resets the index to an empty one of the given capacity.
+   */
+  private void clearIndex(int newCapacity) throws IOException {
+    index.setLength(0);
+    index.setLength(HEADER_SIZE + (long) newCapacity * SLOT_SIZE);
+    capacity = newCapacity;
+    slots = map(capacity);
+    size = 0;
+    writeHeader();
+  }
+
+  /**
+   * Points the index entry of the given hash to the given log position, growing the index if it
+   * gets too full.
+   */
+  private void index(long hash, long position) throws IOException {
+    if (size + 1 > capacity * MAX_LOAD_FACTOR) {
+      grow();
+    }
+
+    int slot = findSlot(hash);
+    if (slots.getLong(slotPosition(slot)) == 0) {
+      size++;
+    }
+    slots.putLong(slotPosition(slot), hash);
+    slots.putLong(slotPosition(slot) + 8, position);
+  }
+
+  /**
+   * Doubles the capacity of the index and re-inserts all entries.
+   */
+  private void grow() throws IOException {
+    long[] hashes = new long[size];
+    long[] positions = new long[size];
+    int count = 0;
+    for (int slot = 0; slot < capacity; slot++) {
+      long hash = slots.getLong(slotPosition(slot));
+      if (hash != 0) {
+        hashes[count] = hash;
+        positions[count] = slots.getLong(slotPosition(slot) + 8);
+        count++;
+      }
+    }
+
+    clearIndex(capacity * 2);
+    for (int i = 0; i < count; i++) {
+      index(hashes[i], positions[i]);
+    }
+  }
+
+  /**
+   * Returns the slot holding the given hash or the empty slot where it should be inserted (linear
+   * probing).
+   */
+  private int findSlot(long hash) {
+    int mask = capacity - 1;
+    int slot = (int) (hash ^ (hash >>> 32)) & mask;
+    while (true) {
+      long slotHash = slots.getLong(slotPosition(slot));
+      if (slotHash == 0 || slotHash == hash) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /**
+   * Writes the header fields to the index.
+   */
+  private void writeHeader() {
+    slots.putInt(0, MAGIC);
+    slots.putInt(4, VERSION);
+    slots.putInt(HEADER_CAPACITY, capacity);
+    slots.putInt(HEADER_SIZE_FIELD, size);
+    slots.putInt(HEADER_RECORDS, records);
+    slots.putLong(HEADER_INDEXED_LENGTH, logLength);
+  }
+
+  /**
+   * Appends a record to the end of the log.
+   *
+   * @return the position of the record in the log
+   */
+  private long appendRecord(byte[] record) throws IOException {
+    long position = logLength;
+    logLength += writeRecord(logChannel, position, record);
+    return position;
+  }
+
+  /**
+   * Writes a length-prefixed record to the given channel.
+   *
+   * @return the number of bytes written
+   */
+  private static int writeRecord(FileChannel channel, long position, byte[] record)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(4 + record.length);
+    buffer.putInt(record.length).put(record).flip();
+    long current = position;
+    while (buffer.hasRemaining()) {
+      current += channel.write(buffer, current);
+    }
+    return 4 + record.length;
+  }
+
+  /**
+   * Reads the record (without length prefix) at the given position of the log.
+   */
+  private byte[] readRecord(long position) throws IOException {
+    ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+    readFully(lengthBuffer, position);
+    ByteBuffer record = ByteBuffer.allocate(lengthBuffer.getInt(0));
+    readFully(record, position + 4);
+    return record.array();
+  }
+
+  /**
+   * Fills the given buffer from the log, starting at the given position.
+   */
+  private void readFully(ByteBuffer buffer, long position) throws IOException {
+    long current = position;
+    while (buffer.hasRemaining()) {
+      int read = logChannel.read(buffer, current);
+      if (read < 0) {
+        throw new IOException("Unexpected end of '" + logFile + "'");
+      }
+      current += read;
+    }
+  }
+
+  private boolean isExpired(long writtenAt) {
+    return timeToLiveMillis > 0 && System.currentTimeMillis() - writtenAt > timeToLiveMillis;
+  }
+
+  private static int slotPosition(int slot) {
+    return HEADER_SIZE + slot * SLOT_SIZE;
+  }
+
+  /**
+   * Returns the 64-bit hash of a key, never 0 (which marks empty slots).
+   */
+  private static long hash(String keyString) {
+    long hash = HASH_FUNCTION.hashString(keyString, Charsets.UTF_8).asLong();
+    return hash == 0 ? 1 : hash;
+  }
+
+  private static String toKeyString(EstimateCacheKey key) {
+    String matchType = key.getMatchType() != null ? key.getMatchType().getValue() : "";
+    return key.getText() + '\t' + matchType + '\t' + key.getContext();
+  }
+
+  private static void writeStats(DataOutputStream out, StatsEstimate stats) throws IOException {
+    int flags = 0;
+    flags |= stats.getAverageCpc() != null ? FLAG_AVERAGE_CPC : 0;
+    flags |= stats.getAveragePosition() != null ? FLAG_AVERAGE_POSITION : 0;
+    flags |= stats.getClicksPerDay() != null ? FLAG_CLICKS : 0;
+    flags |= stats.getClickThroughRate() != null ? FLAG_CTR : 0;
+    flags |= stats.getImpressionsPerDay() != null ? FLAG_IMPRESSIONS : 0;
+    flags |= stats.getTotalCost() != null ? FLAG_TOTAL_COST : 0;
+
+    out.writeByte(flags);
+    out.writeLong(stats.getAverageCpc() != null ? stats.getAverageCpc().getMicroAmount() : 0);
+    out.writeDouble(stats.getAveragePosition() != null ? stats.getAveragePosition() : 0);
+    out.writeFloat(stats.getClicksPerDay() != null ? stats.getClicksPerDay() : 0);
+    out.writeDouble(stats.getClickThroughRate() != null ? stats.getClickThroughRate() : 0);
+    out.writeFloat(stats.getImpressionsPerDay() != null ? stats.getImpressionsPerDay() : 0);
+    out.writeLong(stats.getTotalCost() != null ? stats.getTotalCost().getMicroAmount() : 0);
+  }
+
+  private static StatsEstimate readStats(DataInputStream in) throws IOException {
+    int flags = in.readByte();
+    long averageCpc = in.readLong();
+    double averagePosition = in.readDouble();
+    float clicks = in.readFloat();
+    double ctr = in.readDouble();
+    float impressions = in.readFloat();
+    long totalCost = in.readLong();
+
+    StatsEstimate stats = new StatsEstimate();
+    if ((flags & FLAG_AVERAGE_CPC) != 0) {
+      stats.setAverageCpc(toMoney(averageCpc));
+    }
+    if ((flags & FLAG_AVERAGE_POSITION) != 0) {
+      stats.setAveragePosition(averagePosition);
+    }
+    if ((flags & FLAG_CLICKS) != 0) {
+      stats.setClicksPerDay(clicks);
+    }
+    if ((flags & FLAG_CTR) != 0) {
+      stats.setClickThroughRate(ctr);
+    }
+    if ((flags & FLAG_IMPRESSIONS) != 0) {
+      stats.setImpressionsPerDay(impressions);
+    }
+    if ((flags & FLAG_TOTAL_COST) != 0) {
+      stats.setTotalCost(toMoney(totalCost));
+    }
+    return stats;
+  }
+
+  private static Money toMoney(long microAmount) {
+    Money money = new Money();
+    money.setMicroAmount(microAmount);
+    return money;
+  }
+}
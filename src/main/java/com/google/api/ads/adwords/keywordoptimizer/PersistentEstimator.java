@@ -0,0 +1,169 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This {@link TrafficEstimator} reads {@link TrafficEstimate}s from a
+ * {@link PersistentEstimateStore} before asking a nested {@link TrafficEstimator}, so that
+ * estimates from previous runs can be reused. Newly retrieved estimates are written to the store
+ * in the background (write-behind), so the optimization does not wait for disk writes.
+ *
+ * <p>Make sure to call {@link #close()} at the end, which writes all pending estimates and closes
+ * the store.
+ */
+public class PersistentEstimator implements TrafficEstimator {
+  private static final Logger logger = LoggerFactory.getLogger(PersistentEstimator.class);
+
+  // Time to wait for pending writes when closing the estimator.
+  private static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+  // Time to wait for the current write once pending writes are discarded.
+  private static final long DISCARD_TIMEOUT_SECONDS = 5;
+
+  private final TrafficEstimator estimator;
+  private final PersistentEstimateStore store;
+  private final ExecutorService writer;
+
+  // Set when closing takes too long, so the writer stops before the next write.
+  private volatile boolean discardPendingWrites;
+
+  /**
+   * Creates a new {@link PersistentEstimator} around an existing {@link TrafficEstimator}.
+   *
+   * @param estimator the nested {@link TrafficEstimator}, which will be used whenever no entry is
+   *                  found in the store
+   * @param store the store to read estimates from and write them to
+   */
+  public PersistentEstimator(TrafficEstimator estimator, PersistentEstimateStore store) {
+    this.estimator = estimator;
+    this.store = store;
+    this.writer = Executors.newSingleThreadExecutor(
+        KeywordOptimizerUtil.createThreadFactory("estimate-store-writer-%d"));
+  }
+
+  @Override
+  public KeywordCollection estimate(KeywordCollection keywords) throws KeywordOptimizerException {
+    KeywordCollection storedEstimates = new KeywordCollection(keywords);
+    KeywordCollection retrieveKeywords = new KeywordCollection(keywords);
+
+    String context = EstimateCacheKey.getContext(keywords);
+    Map<KeywordKey, EstimateCacheKey> keys = new HashMap<KeywordKey, EstimateCacheKey>();
+
+    try {
+      for (KeywordInfo keywordInfo : keywords) {
+        Keyword keyword = keywordInfo.getKeyword();
+        EstimateCacheKey key = new EstimateCacheKey(keyword, context);
+        TrafficEstimate storedEstimate = store.get(key);
+
+        if (storedEstimate != null) {
+          storedEstimates.add(new KeywordInfo(keyword, storedEstimate, null));
+        } else {
+          keys.put(keywordInfo.getKeywordKey(), key);
+          retrieveKeywords.add(new KeywordInfo(keyword, null, null));
+        }
+      }
+    } catch (IOException e) {
+      throw new KeywordOptimizerException("Problem while reading from the estimate store", e);
+    }
+
+    logger.info("Found " + storedEstimates.size() + " of " + keywords.size()
+        + " estimates in the estimate store");
+
+    if (retrieveKeywords.size() == 0) {
+      return storedEstimates;
+    }
+
+    KeywordCollection estimates = estimator.estimate(retrieveKeywords);
+    final List<KeywordInfo> newEstimates = new ArrayList<KeywordInfo>(estimates.size());
+    final List<EstimateCacheKey> newKeys = new ArrayList<EstimateCacheKey>(estimates.size());
+
+    for (KeywordInfo estimate : estimates) {
+      if (estimate.hasEstimate()) {
+        EstimateCacheKey key = keys.get(estimate.getKeywordKey());
+        newKeys.add(key != null ? key : new EstimateCacheKey(estimate.getKeyword(), context));
+        newEstimates.add(estimate);
+      }
+      storedEstimates.add(estimate);
+    }
+
+    writer.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          for (int i = 0; i < newEstimates.size() && !discardPendingWrites; i++) {
+            store.put(newKeys.get(i), newEstimates.get(i).getEstimate());
+          }
+        } catch (IOException e) {
+          logger.warn("Problem while writing to the estimate store", e);
+        }
+      }
+    });
+
+    return storedEstimates;
+  }
+
+  /**
+   * Writes all pending estimates, compacts the store if it holds too many superseded records and
+   * closes it.
+   *
+   * <p>If the pending estimates cannot be written in time, the remaining ones are discarded. The
+   * writer is not interrupted, as that would close the log file in the middle of a write. Instead,
+   * it stops before its next write. The store is only compacted once the writer has terminated, so
+   * no estimate is ever written to a store being compacted or closed.
+   *
+   * @throws KeywordOptimizerException in case of an error writing or closing the store
+   */
+  public void close() throws KeywordOptimizerException {
+    writer.shutdown();
+    try {
+      boolean terminated = writer.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      if (!terminated) {
+        logger.warn("Not all estimates could be written to the estimate store in time, "
+            + "discarding the remaining ones");
+        discardPendingWrites = true;
+        terminated = writer.awaitTermination(DISCARD_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      }
+
+      // Compact once at least half of the log consists of superseded records.
+      if (!terminated) {
+        logger.warn("Estimate store writer did not stop, skipping compaction");
+      } else if (store.getRecordCount() > 2 * store.size()) {
+        store.compact();
+      }
+
+      // Closing waits for a write still in progress, no further writes are started.
+      store.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new KeywordOptimizerException("Interrupted while writing to the estimate store", e);
+    } catch (IOException e) {
+      throw new KeywordOptimizerException("Problem while closing the estimate store", e);
+    }
+  }
+}
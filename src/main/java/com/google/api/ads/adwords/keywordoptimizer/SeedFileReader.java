@@ -0,0 +1,190 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.common.base.Charsets;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reads settings (keywords / urls / search terms) line-by-line from a file and passes them on to a
+ * {@link LineHandler} one at a time, so that the file never has to be kept in memory as a whole.
+ * The file is memory-mapped in windows of a fixed size and decoded as UTF-8. Empty lines, comment
+ * lines (starting with '#') and duplicate lines are skipped in the same pass.
+ */
+public class SeedFileReader {
+  // Size of the part of the file mapped into memory at a time.
+  public static final int DEFAULT_MAP_SIZE = 64 * 1024 * 1024;
+
+  private static final char BYTE_ORDER_MARK = '\uFEFF';
+
+  private final String fileName;
+  private final int mapSize;
+
+  private int lineCount;
+  private int commentCount;
+  private int duplicateCount;
+
+  /**
+   * Handles the lines read from a file.
+   */
+  public interface LineHandler {
+    /**
+     * Handles a single line (trimmed, not empty, no comment, not seen before).
+     *
+     * @param line the line to handle
+     */
+    void handle(String line);
+  }
+
+  /**
+   * Creates a new {@link SeedFileReader} for the given file.
+   *
+   * @param fileName the name of the file to read from
+   */
+  public SeedFileReader(String fileName) {
+    this(fileName, DEFAULT_MAP_SIZE);
+  }
+
+  /**
+   * Creates a new {@link SeedFileReader} for the given file.
+   *
+   * @param fileName the name of the file to read from
+   * @param mapSize size of the part of the file mapped into memory at a time
+   */
+  SeedFileReader(String fileName, int mapSize) {
+    this.fileName = fileName;
+    this.mapSize = mapSize;
+  }
+
+  /**
+   * Reads the file and passes all distinct lines on to the given handler (in order of their first
+   * occurrence).
+   *
+   * @param handler the handler for the lines
+   * @return the number of lines passed on to the handler
+   * @throws KeywordOptimizerException in case there is a problem reading the file
+   */
+  public int read(LineHandler handler) throws KeywordOptimizerException {
+    lineCount = 0;
+    commentCount = 0;
+    duplicateCount = 0;
+
+    Set<String> seen = new HashSet<String>();
+    byte[] line = new byte[256];
+    int length = 0;
+
+    FileInputStream in = null;
+    try {
+      in = new FileInputStream(fileName);
+      FileChannel channel = in.getChannel();
+      long size = channel.size();
+
+      // Lines may span several windows, so they are collected in a separate buffer.
+      for (long position = 0; position < size; position += mapSize) {
+        MappedByteBuffer buffer =
+            channel.map(MapMode.READ_ONLY, position, Math.min(mapSize, size - position));
+        while (buffer.hasRemaining()) {
+          byte b = buffer.get();
+          if (b == '\n') {
+            handleLine(new String(line, 0, length, Charsets.UTF_8), seen, handler);
+            length = 0;
+          } else {
+            if (length == line.length) {
+              line = Arrays.copyOf(line, 2 * length);
+            }
+            line[length++] = b;
+          }
+        }
+      }
+
+      if (length > 0) {
+        handleLine(new String(line, 0, length, Charsets.UTF_8), seen, handler);
+      }
+    } catch (IOException e) {
+      throw new KeywordOptimizerException("Error loading file '" + fileName + "'", e);
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // Nothing left to do, all lines have been read anyways.
+        }
+      }
+    }
+
+    return seen.size();
+  }
+
+  /**
+   * Passes a single line on to the handler, unless it should be skipped.
+   *
+   * @param line the line as read from the file
+   * @param seen the lines passed on so far
+   * @param handler the handler for the lines
+   */
+  private void handleLine(String line, Set<String> seen, LineHandler handler) {
+    if (lineCount == 0 && !line.isEmpty() && line.charAt(0) == BYTE_ORDER_MARK) {
+      line = line.substring(1);
+    }
+    lineCount++;
+
+    // Also removes the '\r' of Windows line endings.
+    line = line.trim();
+
+    if (line.isEmpty()) {
+      return;
+    }
+    if (line.startsWith("#")) {
+      commentCount++;
+      return;
+    }
+    if (!seen.add(line)) {
+      duplicateCount++;
+      return;
+    }
+
+    handler.handle(line);
+  }
+
+  /**
+   * Returns the number of lines read (including skipped ones) by the last call to
+   * {@link #read(LineHandler)}.
+   */
+  public int getLineCount() {
+    return lineCount;
+  }
+
+  /**
+   * Returns the number of comment lines skipped by the last call to {@link #read(LineHandler)}.
+   */
+  public int getCommentCount() {
+    return commentCount;
+  }
+
+  /**
+   * Returns the number of duplicate lines skipped by the last call to {@link #read(LineHandler)}.
+   */
+  public int getDuplicateCount() {
+    return duplicateCount;
+  }
+}
@@ -0,0 +1,202 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.o.Attribute;
+import com.google.api.ads.adwords.axis.v201509.o.AttributeType;
+import com.google.api.ads.adwords.axis.v201509.o.StringAttribute;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdea;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaPage;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaService;
+import com.google.api.ads.common.lib.utils.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+
+/**
+ * Iterates over the keyword texts of all ideas returned by the {@link TargetingIdeaService},
+ * fetching pages only when they are needed. Consumers can stop at any time (or set a limit on
+ * the number of ideas), so pages that are never used are not fetched and only a few pages are held
+ * in memory at a time, no matter how many ideas there are.
+ *
+ * <p>Using an executor, the next few pages can be fetched concurrently ahead of time. Ideas are
+ * always returned in the order of the pages.
+ *
+ * <p>This is not a {@link java.util.Iterator}, as retrieving pages may fail with a
+ * {@link KeywordOptimizerException}. Call {@link #close()} when stopping before the end, so that
+ * pages fetched ahead of time are cancelled.
+ */
+public class TargetingIdeaIterator {
+  /**
+   * Retrieves a single page of ideas.
+   */
+  public interface PageLoader {
+    /**
+     * Retrieves a single page of ideas.
+     *
+     * @param offset the index of the first idea on the page
+     * @param pageSize the maximum number of ideas on the page
+     * @return the page of ideas
+     * @throws KeywordOptimizerException in case of an error retrieving the page
+     */
+    TargetingIdeaPage load(int offset, int pageSize) throws KeywordOptimizerException;
+  }
+
+  private final PageLoader loader;
+  private final int pageSize;
+  private final int limit;
+  private final ListeningExecutorService executor;
+  private final int prefetch;
+
+  // Pages requested but not consumed yet (in order).
+  private final Deque<ListenableFuture<TargetingIdeaPage>> pending;
+
+  private Integer totalNumEntries;
+  private int nextOffset;
+  private TargetingIdea[] entries;
+  private int entryIndex;
+  private int returned;
+
+  /**
+   * Creates a new {@link TargetingIdeaIterator} fetching one page after the other (in the calling
+   * thread).
+   *
+   * @param loader retrieves single pages of ideas
+   * @param pageSize the number of ideas per page
+   * @param limit the maximum number of ideas to return (0 for no limit)
+   */
+  public TargetingIdeaIterator(PageLoader loader, int pageSize, int limit) {
+    this(loader, pageSize, limit, MoreExecutors.newDirectExecutorService(), 1);
+  }
+
+  /**
+   * Creates a new {@link TargetingIdeaIterator}.
+   *
+   * @param loader retrieves single pages of ideas
+   * @param pageSize the number of ideas per page
+   * @param limit the maximum number of ideas to return (0 for no limit)
+   * @param executor the executor to fetch pages on
+   * @param prefetch the maximum number of pages being fetched at the same time
+   */
+  public TargetingIdeaIterator(PageLoader loader, int pageSize, int limit,
+      ListeningExecutorService executor, int prefetch) {
+    this.loader = loader;
+    this.pageSize = pageSize;
+    this.limit = limit;
+    this.executor = executor;
+    this.prefetch = Math.max(1, prefetch);
+    this.pending = new ArrayDeque<ListenableFuture<TargetingIdeaPage>>();
+  }
+
+  /**
+   * Checks whether there are more ideas, fetching the next page if necessary.
+   *
+   * @return <code>true</code> if there is another idea
+   * @throws KeywordOptimizerException in case of an error retrieving a page
+   */
+  public boolean hasNext() throws KeywordOptimizerException {
+    if (limit > 0 && returned >= limit) {
+      close();
+      return false;
+    }
+
+    while (entries == null || entryIndex >= entries.length) {
+      if (!loadNextPage()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the keyword text of the next idea.
+   *
+   * @return the keyword text
+   * @throws KeywordOptimizerException in case of an error retrieving a page
+   */
+  public String next() throws KeywordOptimizerException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    Map<AttributeType, Attribute> data = Maps.toMap(entries[entryIndex++].getData());
+    returned++;
+
+    StringAttribute keyword = (StringAttribute) data.get(AttributeType.KEYWORD_TEXT);
+    return keyword.getValue();
+  }
+
+  /**
+   * Cancels all pages fetched ahead of time.
+   */
+  public void close() {
+    for (ListenableFuture<TargetingIdeaPage> page : pending) {
+      page.cancel(false);
+    }
+    pending.clear();
+  }
+
+  /**
+   * Moves on to the next page. The first page is fetched directly, as it tells how many ideas
+   * there are, further ones are requested (up to the prefetch limit) before waiting for the next
+   * one.
+   *
+   * @return <code>true</code> if there was another page
+   * @throws KeywordOptimizerException in case of an error retrieving a page
+   */
+  private boolean loadNextPage() throws KeywordOptimizerException {
+    TargetingIdeaPage page;
+
+    if (totalNumEntries == null) {
+      page = loader.load(0, pageSize);
+      totalNumEntries = page.getTotalNumEntries() != null ? page.getTotalNumEntries() : 0;
+      nextOffset = pageSize;
+    } else {
+      requestPages();
+      if (pending.isEmpty()) {
+        return false;
+      }
+      page = KeywordOptimizerUtil.waitFor(pending.poll());
+    }
+
+    entries = page.getEntries() != null ? page.getEntries() : new TargetingIdea[0];
+    entryIndex = 0;
+    return true;
+  }
+
+  /**
+   * Requests further pages, as long as there are any left and the prefetch limit allows it.
+   */
+  private void requestPages() {
+    int end = limit > 0 ? Math.min(totalNumEntries, limit) : totalNumEntries;
+
+    while (pending.size() < prefetch && nextOffset < end) {
+      final int offset = nextOffset;
+      pending.add(executor.submit(new Callable<TargetingIdeaPage>() {
+        @Override
+        public TargetingIdeaPage call() throws KeywordOptimizerException {
+          return loader.load(offset, pageSize);
+        }
+      }));
+      nextOffset += pageSize;
+    }
+  }
+}
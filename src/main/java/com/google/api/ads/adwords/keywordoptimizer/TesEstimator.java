@@ -14,8 +14,12 @@
 
 package com.google.api.ads.adwords.keywordoptimizer;
 
+import com.google.api.ads.adwords.axis.v201509.cm.ApiError;
 import com.google.api.ads.adwords.axis.v201509.cm.ApiException;
+import com.google.api.ads.adwords.axis.v201509.cm.CollectionSizeError;
 import com.google.api.ads.adwords.axis.v201509.cm.Criterion;
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.SizeLimitError;
 import com.google.api.ads.adwords.axis.v201509.o.AdGroupEstimateRequest;
 import com.google.api.ads.adwords.axis.v201509.o.CampaignEstimateRequest;
 import com.google.api.ads.adwords.axis.v201509.o.KeywordEstimate;
@@ -24,26 +28,149 @@ import com.google.api.ads.adwords.axis.v201509.o.TrafficEstimatorResult;
 import com.google.api.ads.adwords.axis.v201509.o.TrafficEstimatorSelector;
 import com.google.api.ads.adwords.axis.v201509.o.TrafficEstimatorService;
 import com.google.api.ads.adwords.axis.v201509.o.TrafficEstimatorServiceInterface;
+import com.google.api.ads.adwords.keywordoptimizer.ApiRateLimiter.ApiCall;
+import com.google.api.ads.adwords.keywordoptimizer.ConcurrentKeywordCollection.MergePolicy;
+import com.google.common.base.Function;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
 
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.SocketTimeoutException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This estimator uses the {@link TrafficEstimatorService} of the AdWords API to create traffic
  * estimates. It is the only implementation of a {@link TrafficEstimator} provided by this utility,
  * but can be exchanged for your own implementation.
+ *
+ * <p>Large {@link KeywordCollection}s are split into batches of a configurable size, which are sent
+ * to the {@link TrafficEstimatorService} concurrently using a configurable number of threads. The
+ * batch size adapts to the observed latency and errors (see {@link AdaptiveBatchSizer}), batches
+ * that time out or are rejected for being too large are retried in smaller batches. All requests go
+ * through the {@link ApiRateLimiter} shared for the {@link TrafficEstimatorService}.
+ *
+ * <p>If a batch fails only because of some of its keywords (e.g. an invalid keyword text), which
+ * is told by the field paths of the errors pointing to single keyword estimate requests, these
+ * keywords are recorded as unestimable (in a bounded {@link NegativeEstimateCache}, so they are
+ * retried once they expire) and skipped until then, while the rest of the batch is sent again.
+ * Any other error (including errors caused by the additional criteria or the max cpc) fails the
+ * whole estimation.
+ *
+ * <p>Being an {@link AsyncTrafficEstimator} as well, it can also return these requests as a future
+ * without waiting for them.
  */
-public class TesEstimator implements TrafficEstimator {
-  private TrafficEstimatorServiceInterface tes;
+public class TesEstimator implements TrafficEstimator, AsyncTrafficEstimator {
+  private static final Logger logger = LoggerFactory.getLogger(TesEstimator.class);
+
+  // Default number of keywords sent in one request (initially).
+  public static final int DEFAULT_BATCH_SIZE = 500;
+
+  // Default limits for the number of keywords sent in one request.
+  public static final int DEFAULT_MIN_BATCH_SIZE = 50;
+  public static final int DEFAULT_MAX_BATCH_SIZE = 2000;
+
+  // Default latency (in milliseconds) above which the batch size is decreased.
+  public static final long DEFAULT_TARGET_LATENCY = 10000;
+
+  // Default number of requests sent concurrently.
+  public static final int DEFAULT_PARALLELISM = 4;
+
+  // Field path of errors caused by a single keyword, holding the index of its request.
+  private static final Pattern KEYWORD_FIELD_PATH =
+      Pattern.compile("keywordEstimateRequests\\[(\\d+)\\]");
+
+  // Services are not thread-safe, so every thread uses its own one.
+  private final ThreadLocal<TrafficEstimatorServiceInterface> tes;
+  private final ListeningExecutorService executor;
+  private final AdaptiveBatchSizer batchSizer;
+  private final ApiRateLimiter rateLimiter;
+
+  // Keywords that caused errors in the traffic estimator service.
+  private final NegativeEstimateCache unestimable;
 
   /**
    * Creates a new {@link TesEstimator}.
    *
    * @param context holding shared objects during the optimization process
    */
-  public TesEstimator(OptimizationContext context) {
-    tes = context.getAdwordsApiUtil().getService(TrafficEstimatorServiceInterface.class);
+  public TesEstimator(final OptimizationContext context) {
+    Configuration config = context.getConfiguration();
+    batchSizer = new AdaptiveBatchSizer(
+        config.getInt(KeywordOptimizerProperty.EstimatorBatchSize.getName(), DEFAULT_BATCH_SIZE),
+        config.getInt(
+            KeywordOptimizerProperty.EstimatorMinBatchSize.getName(), DEFAULT_MIN_BATCH_SIZE),
+        config.getInt(
+            KeywordOptimizerProperty.EstimatorMaxBatchSize.getName(), DEFAULT_MAX_BATCH_SIZE),
+        config.getLong(
+            KeywordOptimizerProperty.EstimatorTargetLatency.getName(), DEFAULT_TARGET_LATENCY));
+    executor = KeywordOptimizerUtil.createExecutor(config.getInt(
+        KeywordOptimizerProperty.EstimatorParallelism.getName(), DEFAULT_PARALLELISM),
+        "tes-estimator-%d");
+    rateLimiter = context.getRateLimiter(TrafficEstimatorServiceInterface.class);
+    unestimable = new NegativeEstimateCache(
+        config.getLong(KeywordOptimizerProperty.EstimateCacheMaxSize.getName(),
+            CachedEstimator.DEFAULT_MAX_SIZE),
+        config.getLong(KeywordOptimizerProperty.EstimateCacheNegativeExpireAfterMinutes.getName(),
+            CachedEstimator.DEFAULT_NEGATIVE_EXPIRE_AFTER_MINUTES));
+
+    tes = new ThreadLocal<TrafficEstimatorServiceInterface>() {
+      @Override
+      protected TrafficEstimatorServiceInterface initialValue() {
+        AdWordsApiUtil util = context.getAdwordsApiUtil();
+        synchronized (util) {
+          return util.getService(TrafficEstimatorServiceInterface.class);
+        }
+      }
+    };
+  }
+
+  /**
+   * Creates a new {@link TesEstimator} using the given (thread-safe) service and a fixed batch
+   * size.
+   *
+   * @param service the service used for all requests
+   * @param batchSize maximum number of keywords sent in one request
+   * @param parallelism maximum number of requests sent concurrently
+   */
+  TesEstimator(
+      final TrafficEstimatorServiceInterface service, int batchSize, int parallelism) {
+    this(service, AdaptiveBatchSizer.fixed(batchSize), parallelism);
+  }
+
+  /**
+   * Creates a new {@link TesEstimator} using the given (thread-safe) service.
+   *
+   * @param service the service used for all requests
+   * @param batchSizer determines the number of keywords sent in one request
+   * @param parallelism maximum number of requests sent concurrently
+   */
+  TesEstimator(final TrafficEstimatorServiceInterface service, AdaptiveBatchSizer batchSizer,
+      int parallelism) {
+    this.batchSizer = batchSizer;
+    this.executor = KeywordOptimizerUtil.createExecutor(parallelism, "tes-estimator-%d");
+    this.rateLimiter = ApiRateLimiter.unlimited("TrafficEstimatorService");
+    this.unestimable = new NegativeEstimateCache(
+        CachedEstimator.DEFAULT_MAX_SIZE, CachedEstimator.DEFAULT_NEGATIVE_EXPIRE_AFTER_MINUTES);
+
+    tes = new ThreadLocal<TrafficEstimatorServiceInterface>() {
+      @Override
+      protected TrafficEstimatorServiceInterface initialValue() {
+        return service;
+      }
+    };
   }
 
   /**
@@ -133,22 +260,270 @@ public class TesEstimator implements TrafficEstimator {
 
   @Override
   public KeywordCollection estimate(KeywordCollection keywords) throws KeywordOptimizerException {
-    try {
-      // If there are no keywords in list, return empty estimate.
-      if (keywords.size() == 0) {
-        KeywordCollection emptyEstimates = new KeywordCollection(keywords);
-        return emptyEstimates;
+    // If there are no keywords in list, return empty estimate.
+    if (keywords.size() == 0) {
+      KeywordCollection emptyEstimates = new KeywordCollection(keywords);
+      return emptyEstimates;
+    }
+
+    // Don't bother the executor for a single request.
+    int batchSize = batchSizer.getBatchSize();
+    if (keywords.size() <= batchSize) {
+      return estimateBatch(keywords, batchSize);
+    }
+
+    return KeywordOptimizerUtil.waitFor(estimateAsync(keywords));
+  }
+
+  /**
+   * Sends the given keywords in batches, all of them concurrently, without waiting for them.
+   */
+  @Override
+  public ListenableFuture<KeywordCollection> estimateAsync(final KeywordCollection keywords) {
+    // Split into batches (sorted, so that batches are stable across calls) and send them all.
+    final int batchSize = batchSizer.getBatchSize();
+    final ConcurrentKeywordCollection estimates =
+        new ConcurrentKeywordCollection(keywords, MergePolicy.REPLACE);
+    List<ListenableFuture<Integer>> futures = new ArrayList<ListenableFuture<Integer>>();
+    for (List<KeywordInfo> batchKeywords
+        : Lists.partition(keywords.getListSortedByKeyword(), batchSize)) {
+      final KeywordCollection batch = new KeywordCollection(keywords);
+      for (KeywordInfo keyword : batchKeywords) {
+        batch.add(keyword);
       }
 
-      TrafficEstimatorSelector selector = createSelector(keywords);
-      TrafficEstimatorResult result = tes.get(selector);
+      // Every batch writes its estimates directly, so there is no merge step at the end.
+      futures.add(executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws KeywordOptimizerException {
+          return estimates.addAll(estimateBatch(batch, batchSize));
+        }
+      }));
+    }
+
+    if (futures.size() > 1) {
+      logger.info("Estimating " + keywords.size() + " keywords in " + futures.size() + " batches");
+    }
+
+    return Futures.transform(Futures.allAsList(futures),
+        new Function<List<Integer>, KeywordCollection>() {
+          @Override
+          public KeywordCollection apply(List<Integer> addedCounts) {
+            return estimates.toKeywordCollection();
+          }
+        }, MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Estimates a batch of keywords using a single request. If the request times out or is rejected
+   * for being too large, the batch is split up and estimated again in smaller batches. If it fails
+   * because of some of its keywords, these are left out and the request is sent again. Keywords
+   * known to be unestimable are left out.
+   *
+   * @param batch the {@link KeywordCollection} to be evaluated
+   * @param sentBatchSize the batch size at the time the batch was created
+   * @return a {@link KeywordCollection} containing the given keywords with {@link TrafficEstimate}s
+   *         (except for unestimable ones)
+   * @throws KeywordOptimizerException in case of an error querying the traffic estimator service
+   */
+  private KeywordCollection estimateBatch(KeywordCollection batch, int sentBatchSize)
+      throws KeywordOptimizerException {
+    KeywordCollection keywords = removeUnestimable(batch);
+    if (keywords.size() == 0) {
+      return keywords;
+    }
+
+    try {
+      final TrafficEstimatorSelector selector = createSelector(keywords);
+      // Only measure the request itself, not the time spent waiting for the rate limit.
+      final long[] latency = new long[1];
+      TrafficEstimatorResult result = rateLimiter.call(new ApiCall<TrafficEstimatorResult>() {
+        @Override
+        public TrafficEstimatorResult call() throws ApiException, RemoteException {
+          long start = System.currentTimeMillis();
+          TrafficEstimatorResult result = tes.get().get(selector);
+          latency[0] = System.currentTimeMillis() - start;
+          return result;
+        }
+      });
+      batchSizer.onSuccess(sentBatchSize, keywords.size(), latency[0]);
       KeywordCollection estimates = createEstimates(result, keywords);
 
       return estimates;
     } catch (ApiException e) {
+      if (isSizeError(e) && keywords.size() > batchSizer.getMinBatchSize()) {
+        batchSizer.onOverload(sentBatchSize);
+        return estimateInSmallerBatches(keywords);
+      }
+      Set<Integer> failedIndices = getKeywordErrorIndices(e, keywords.size());
+      if (failedIndices != null) {
+        return estimateWithoutFailed(keywords, failedIndices, e, sentBatchSize);
+      }
       throw new KeywordOptimizerException("Problem while querying traffic estimator service", e);
     } catch (RemoteException e) {
+      if (isTimeout(e) && keywords.size() > batchSizer.getMinBatchSize()) {
+        batchSizer.onOverload(sentBatchSize);
+        return estimateInSmallerBatches(keywords);
+      }
       throw new KeywordOptimizerException("Problem while connecting to the AdWords API", e);
     }
   }
+
+  /**
+   * Estimates a batch of keywords that failed as a whole, splitting it into batches of (at most)
+   * half the size.
+   *
+   * @param keywords the {@link KeywordCollection} to be evaluated
+   * @return a {@link KeywordCollection} containing the given keywords with {@link TrafficEstimate}s
+   * @throws KeywordOptimizerException in case of an error querying the traffic estimator service
+   */
+  private KeywordCollection estimateInSmallerBatches(KeywordCollection keywords)
+      throws KeywordOptimizerException {
+    int batchSize = Math.min(batchSizer.getBatchSize(), (keywords.size() + 1) / 2);
+    logger.info("Retrying " + keywords.size() + " keywords in batches of " + batchSize);
+
+    KeywordCollection estimates = new KeywordCollection(keywords);
+    for (List<KeywordInfo> batchKeywords
+        : Lists.partition(keywords.getListSortedByKeyword(), batchSize)) {
+      KeywordCollection batch = new KeywordCollection(keywords);
+      for (KeywordInfo keyword : batchKeywords) {
+        batch.add(keyword);
+      }
+
+      for (KeywordInfo estimate : estimateBatch(batch, batchSize)) {
+        estimates.add(estimate);
+      }
+    }
+    return estimates;
+  }
+
+  /**
+   * Estimates a batch of keywords that failed because of some of its keywords. These are recorded
+   * as unestimable and the remaining keywords are sent again.
+   *
+   * @param keywords the {@link KeywordCollection} that was sent
+   * @param failedIndices the indices of the failed keyword estimate requests
+   * @param e the error the batch failed with
+   * @param sentBatchSize the batch size at the time the batch was created
+   * @return a {@link KeywordCollection} containing the given keywords with {@link TrafficEstimate}s
+   *         (except for unestimable ones)
+   * @throws KeywordOptimizerException in case of an error querying the traffic estimator service
+   */
+  private KeywordCollection estimateWithoutFailed(KeywordCollection keywords,
+      Set<Integer> failedIndices, ApiException e, int sentBatchSize)
+      throws KeywordOptimizerException {
+    // The requests were created in this order (see createSelector).
+    List<KeywordInfo> sortedKeywords = keywords.getListSortedByKeyword();
+    for (int index : failedIndices) {
+      Keyword keyword = sortedKeywords.get(index).getKeyword();
+      unestimable.put(EstimateCacheKey.create(keyword, keywords));
+      logger.warn("Cannot estimate keyword " + KeywordOptimizerUtil.toString(keyword)
+          + " (" + e.getMessage1() + "), skipping it from now on");
+    }
+
+    return estimateBatch(keywords, sentBatchSize);
+  }
+
+  /**
+   * Returns a copy of the given keywords without the ones known to be unestimable.
+   *
+   * @param keywords the {@link KeywordCollection} to be evaluated
+   * @return the {@link KeywordCollection} without unestimable keywords
+   */
+  private KeywordCollection removeUnestimable(KeywordCollection keywords) {
+    if (unestimable.size() == 0) {
+      return keywords;
+    }
+
+    String context = EstimateCacheKey.getContext(keywords);
+    KeywordCollection estimableKeywords = new KeywordCollection(keywords);
+    for (KeywordInfo keyword : keywords) {
+      if (!unestimable.contains(new EstimateCacheKey(keyword.getKeyword(), context))) {
+        estimableKeywords.add(keyword);
+      }
+    }
+    return estimableKeywords;
+  }
+
+  /**
+   * Finds the keyword estimate requests a request failed because of. This only succeeds if the
+   * field path of every error points to a single keyword estimate request, so that the request
+   * would succeed without these keywords.
+   *
+   * @param e the exception thrown by the service
+   * @param requestCount the number of keyword estimate requests sent
+   * @return the indices of the failed keyword estimate requests, or <code>null</code> if any of
+   *         the errors is not caused by a single keyword
+   */
+  private static Set<Integer> getKeywordErrorIndices(ApiException e, int requestCount) {
+    if (e.getErrors() == null || e.getErrors().length == 0) {
+      return null;
+    }
+
+    Set<Integer> indices = new TreeSet<Integer>();
+    for (ApiError error : e.getErrors()) {
+      if (error.getFieldPath() == null) {
+        return null;
+      }
+      Matcher matcher = KEYWORD_FIELD_PATH.matcher(error.getFieldPath());
+      if (!matcher.find()) {
+        return null;
+      }
+      int index = Integer.parseInt(matcher.group(1));
+      if (index >= requestCount) {
+        return null;
+      }
+      indices.add(index);
+    }
+    return indices;
+  }
+
+  /**
+   * Checks whether a request was rejected because it (or its response) was too large.
+   *
+   * @param e the exception thrown by the service
+   * @return <code>true</code> if the request was too large
+   */
+  private static boolean isSizeError(ApiException e) {
+    if (e.getErrors() == null) {
+      return false;
+    }
+
+    for (ApiError error : e.getErrors()) {
+      if (error instanceof SizeLimitError || error instanceof CollectionSizeError) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether a request failed because it timed out.
+   *
+   * @param e the exception thrown by the service
+   * @return <code>true</code> if the request timed out
+   */
+  private static boolean isTimeout(RemoteException e) {
+    for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+      if (cause instanceof SocketTimeoutException) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the keywords (along with their estimation context) that could not be estimated and
+   * have not expired yet.
+   */
+  public Set<EstimateCacheKey> getUnestimableKeywords() {
+    return unestimable.getKeys();
+  }
+
+  /**
+   * Returns the number of keywords currently sent in one request.
+   */
+  public int getBatchSize() {
+    return batchSizer.getBatchSize();
+  }
 }
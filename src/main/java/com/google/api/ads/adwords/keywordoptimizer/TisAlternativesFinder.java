@@ -18,46 +18,163 @@ import com.google.api.ads.adwords.axis.v201509.cm.ApiException;
 import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
 import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
 import com.google.api.ads.adwords.axis.v201509.cm.Paging;
-import com.google.api.ads.adwords.axis.v201509.o.Attribute;
 import com.google.api.ads.adwords.axis.v201509.o.AttributeType;
 import com.google.api.ads.adwords.axis.v201509.o.IdeaType;
 import com.google.api.ads.adwords.axis.v201509.o.RelatedToQuerySearchParameter;
 import com.google.api.ads.adwords.axis.v201509.o.RequestType;
 import com.google.api.ads.adwords.axis.v201509.o.SearchParameter;
-import com.google.api.ads.adwords.axis.v201509.o.StringAttribute;
-import com.google.api.ads.adwords.axis.v201509.o.TargetingIdea;
 import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaPage;
 import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaSelector;
 import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaService;
 import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaServiceInterface;
-import com.google.api.ads.common.lib.utils.Maps;
+import com.google.api.ads.adwords.keywordoptimizer.ApiRateLimiter.ApiCall;
+import com.google.api.ads.adwords.keywordoptimizer.TargetingIdeaIterator.PageLoader;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
 
 /**
  * Uses the {@link TargetingIdeaService} to create new keyword alternatives. This works pretty much
  * the same way as the {@link TisSearchTermsSeedGenerator}, meaning it creates keywords based on a
- * given set of already existing ones.
+ * given set of already existing ones. The keywords found are normalized (see
+ * {@link KeywordNormalizer}), so that invalid keywords and duplicates are dropped.
+ *
+ * <p>Ideas are retrieved for every keyword text separately and cached by keyword text and
+ * additional criteria, so texts that have been looked up in earlier rounds do not cost any
+ * further requests. The alternatives are the union of the ideas for all texts. Note that this
+ * takes (at least) one request per new keyword text instead of a single request for all of them,
+ * so limiting the number of ideas is recommended for larger numbers of keywords.
+ *
+ * <p>Requests are sent concurrently using a configurable number of threads: ideas for different
+ * keyword texts are retrieved in parallel (each one page after the other), while a single keyword
+ * text gets all threads for retrieving its pages ahead of time. Pages are only retrieved as long as
+ * they are needed: the number of ideas used can be limited, which applies to every keyword text
+ * (see {@link TargetingIdeaIterator}) as well as to the ideas of all texts together, which are
+ * then taken from all texts in turn.
  */
 public class TisAlternativesFinder implements AlternativesFinder {
-  private TargetingIdeaServiceInterface tis;
+  private static final Logger logger = LoggerFactory.getLogger(TisAlternativesFinder.class);
+
+  // Default number of requests sent concurrently.
+  public static final int DEFAULT_PARALLELISM = 4;
+
+  // Default number of query texts to keep ideas for.
+  public static final long DEFAULT_CACHE_SIZE = 1000;
+
+  // Services are not thread-safe, so every thread uses its own one.
+  private final ThreadLocal<TargetingIdeaServiceInterface> tis;
+  private final ListeningExecutorService executor;
+  private final ApiRateLimiter rateLimiter;
+  private final int parallelism;
+  private final int maxIdeas;
+
+  // Ideas (normalized plain text keywords) by query text and additional criteria.
+  private final Cache<String, List<String>> ideaCache;
 
   /**
    * Creates a new {@link TisAlternativesFinder}.
    * 
    * @param context holding shared objects during the optimization process
    */
-  public TisAlternativesFinder(OptimizationContext context) {
-    tis = context.getAdwordsApiUtil().getService(TargetingIdeaServiceInterface.class);
+  public TisAlternativesFinder(final OptimizationContext context) {
+    Configuration config = context.getConfiguration();
+    parallelism = config.getInt(
+        KeywordOptimizerProperty.AlternativesFinderParallelism.getName(), DEFAULT_PARALLELISM);
+    maxIdeas = config.getInt(KeywordOptimizerProperty.AlternativesFinderMaxIdeas.getName(), 0);
+    executor = KeywordOptimizerUtil.createExecutor(parallelism, "tis-alternatives-finder-%d");
+    rateLimiter = context.getRateLimiter(TargetingIdeaServiceInterface.class);
+    ideaCache = createIdeaCache(config.getLong(
+        KeywordOptimizerProperty.AlternativesFinderCacheSize.getName(), DEFAULT_CACHE_SIZE));
+
+    tis = new ThreadLocal<TargetingIdeaServiceInterface>() {
+      @Override
+      protected TargetingIdeaServiceInterface initialValue() {
+        AdWordsApiUtil util = context.getAdwordsApiUtil();
+        synchronized (util) {
+          return util.getService(TargetingIdeaServiceInterface.class);
+        }
+      }
+    };
+  }
+
+  /**
+   * Creates a new {@link TisAlternativesFinder} using the given (thread-safe) service.
+   *
+   * @param service the service used for all requests
+   * @param parallelism maximum number of requests sent concurrently
+   * @param maxIdeas maximum number of ideas to use per keyword text and in total (0 for no limit)
+   */
+  TisAlternativesFinder(
+      final TargetingIdeaServiceInterface service, int parallelism, int maxIdeas) {
+    this.parallelism = parallelism;
+    this.maxIdeas = maxIdeas;
+    executor = KeywordOptimizerUtil.createExecutor(parallelism, "tis-alternatives-finder-%d");
+    rateLimiter = ApiRateLimiter.unlimited("TargetingIdeaService");
+    ideaCache = createIdeaCache(DEFAULT_CACHE_SIZE);
+
+    tis = new ThreadLocal<TargetingIdeaServiceInterface>() {
+      @Override
+      protected TargetingIdeaServiceInterface initialValue() {
+        return service;
+      }
+    };
+  }
+
+  /**
+   * Creates the cache for ideas by query text.
+   *
+   * @param maxSize maximum number of query texts to keep ideas for
+   * @return the cache
+   */
+  private static Cache<String, List<String>> createIdeaCache(long maxSize) {
+    return CacheBuilder.newBuilder().maximumSize(maxSize).build();
   }
 
   @Override
   public KeywordCollection find(KeywordCollection keywords) throws KeywordOptimizerException {
-    Collection<String> keywordTexts = getKeywordTexts(keywords);
+    String criteria = EstimateCacheKey.getCriteriaContext(keywords);
+    Set<String> queryTexts = new TreeSet<String>(keywords.getContainingKeywordTexts());
+    Map<String, List<String>> ideasByText = new HashMap<String, List<String>>();
+    List<String> uncachedTexts = new ArrayList<String>();
+
+    // Ideas are retrieved (and cached) for every query text separately, so that they can be
+    // reused whenever the same text comes up again.
+    for (String queryText : queryTexts) {
+      List<String> queryIdeas = ideaCache.getIfPresent(queryText + "|" + criteria);
+      if (queryIdeas != null) {
+        ideasByText.put(queryText, queryIdeas);
+      } else {
+        uncachedTexts.add(queryText);
+      }
+    }
+
+    Map<String, List<String>> retrievedIdeas = getIdeas(uncachedTexts, keywords);
+    for (Map.Entry<String, List<String>> entry : retrievedIdeas.entrySet()) {
+      ideaCache.put(entry.getKey() + "|" + criteria, entry.getValue());
+    }
+    ideasByText.putAll(retrievedIdeas);
+
+    Set<String> keywordTexts = mergeIdeas(queryTexts, ideasByText);
+    logger.info("Found " + keywordTexts.size() + " ideas for " + queryTexts.size() + " queries ("
+        + (queryTexts.size() - uncachedTexts.size()) + " of them cached)");
 
     KeywordCollection alternatives = new KeywordCollection(keywords);
     for (String keywordText : keywordTexts) {
@@ -70,6 +187,99 @@ public class TisAlternativesFinder implements AlternativesFinder {
     return alternatives;
   }
 
+  /**
+   * Merges the ideas of all query texts, taking the next idea of every text in turn, so that all
+   * texts contribute equally if the number of ideas is limited. Texts are visited in the given
+   * order, so the result does not depend on timing.
+   *
+   * @param queryTexts the query texts in the order to visit them
+   * @param ideasByText the ideas by query text
+   * @return the (distinct) ideas in merge order
+   */
+  private Set<String> mergeIdeas(Set<String> queryTexts, Map<String, List<String>> ideasByText) {
+    List<List<String>> ideaLists = new ArrayList<List<String>>(queryTexts.size());
+    int longest = 0;
+    for (String queryText : queryTexts) {
+      List<String> ideas = ideasByText.get(queryText);
+      ideaLists.add(ideas);
+      longest = Math.max(longest, ideas.size());
+    }
+
+    Set<String> keywordTexts = new LinkedHashSet<String>();
+    for (int i = 0; i < longest; i++) {
+      for (List<String> ideas : ideaLists) {
+        if (maxIdeas > 0 && keywordTexts.size() >= maxIdeas) {
+          return keywordTexts;
+        }
+        if (i < ideas.size()) {
+          keywordTexts.add(ideas.get(i));
+        }
+      }
+    }
+    return keywordTexts;
+  }
+
+  /**
+   * Retrieves the (normalized) ideas for the given query texts. Multiple texts are queried
+   * concurrently, retrieving the pages of each one after the other, so tasks never wait for other
+   * tasks on the same executor. A single text is queried in the calling thread, retrieving its
+   * pages concurrently instead.
+   *
+   * @param queryTexts the texts to retrieve ideas for
+   * @param keywords the keywords defining the additional criteria
+   * @return the ideas by query text
+   * @throws KeywordOptimizerException in case of an error retrieving keywords from TIS
+   */
+  private Map<String, List<String>> getIdeas(List<String> queryTexts,
+      final KeywordCollection keywords) throws KeywordOptimizerException {
+    Map<String, List<String>> ideas = new HashMap<String, List<String>>();
+    if (queryTexts.size() == 1) {
+      String queryText = queryTexts.get(0);
+      ideas.put(queryText, getIdeas(queryText, keywords, true));
+      return ideas;
+    }
+
+    Map<String, ListenableFuture<List<String>>> futures =
+        new LinkedHashMap<String, ListenableFuture<List<String>>>();
+    try {
+      for (final String queryText : queryTexts) {
+        futures.put(queryText, executor.submit(new Callable<List<String>>() {
+          @Override
+          public List<String> call() throws KeywordOptimizerException {
+            return getIdeas(queryText, keywords, false);
+          }
+        }));
+      }
+      for (Map.Entry<String, ListenableFuture<List<String>>> entry : futures.entrySet()) {
+        ideas.put(entry.getKey(), KeywordOptimizerUtil.waitFor(entry.getValue()));
+      }
+    } finally {
+      // Stop querying the remaining texts in case of an error.
+      for (ListenableFuture<List<String>> future : futures.values()) {
+        future.cancel(false);
+      }
+    }
+    return ideas;
+  }
+
+  /**
+   * Retrieves the (normalized) ideas for a single query text.
+   *
+   * @param queryText the text to retrieve ideas for
+   * @param keywords the keywords defining the additional criteria
+   * @param prefetch whether to retrieve pages concurrently
+   * @return the ideas for the query text
+   * @throws KeywordOptimizerException in case of an error retrieving keywords from TIS
+   */
+  private List<String> getIdeas(String queryText, KeywordCollection keywords, boolean prefetch)
+      throws KeywordOptimizerException {
+    KeywordCollection query = new KeywordCollection(keywords);
+    query.add(new KeywordInfo(
+        KeywordOptimizerUtil.createKeyword(queryText, KeywordMatchType.BROAD), null, null));
+
+    return ImmutableList.copyOf(KeywordNormalizer.normalize(getKeywordTexts(query, prefetch)));
+  }
+
   /**
    * Creates the selector for the {@link TargetingIdeaService} based on a given set of
    * {@link KeywordCollection}.
@@ -103,7 +313,9 @@ public class TisAlternativesFinder implements AlternativesFinder {
   }
 
   /**
-   * Finds a collection of plain text keywords based on the given set of keywords.
+   * Finds a collection of plain text keywords based on the given set of keywords. The first page
+   * tells how many ideas there are, the following pages are then retrieved concurrently (a few
+   * pages ahead), but only as long as they are needed.
    * 
    * @param keywords the keywords to as a basis for finding new ones
    * @return a collection of plain text keywords
@@ -111,35 +323,65 @@ public class TisAlternativesFinder implements AlternativesFinder {
    */
   protected Collection<String> getKeywordTexts(KeywordCollection keywords)
       throws KeywordOptimizerException {
-    TargetingIdeaSelector selector = getSelector(keywords);
-    Collection<String> keywordTexts = new ArrayList<String>();
+    return getKeywordTexts(keywords, true);
+  }
 
-    int offset = 0;
+  /**
+   * Finds a collection of plain text keywords based on the given set of keywords, either
+   * retrieving pages concurrently (see {@link #getKeywordTexts(KeywordCollection)}) or one after
+   * the other in the calling thread.
+   *
+   * @param keywords the keywords to as a basis for finding new ones
+   * @param prefetch whether to retrieve pages concurrently
+   * @return a collection of plain text keywords
+   * @throws KeywordOptimizerException in case of an error retrieving keywords from TIS
+   */
+  protected Collection<String> getKeywordTexts(final KeywordCollection keywords, boolean prefetch)
+      throws KeywordOptimizerException {
+    Collection<String> keywordTexts = new ArrayList<String>();
 
-    try {
-      TargetingIdeaPage page = null;
+    PageLoader loader = new PageLoader() {
+      @Override
+      public TargetingIdeaPage load(int offset, int pageSize) throws KeywordOptimizerException {
+        return getPage(keywords, offset, pageSize);
+      }
+    };
+    TargetingIdeaIterator ideas = prefetch
+        ? new TargetingIdeaIterator(
+            loader, TisBasedSeedGenerator.PAGE_SIZE, maxIdeas, executor, parallelism)
+        : new TargetingIdeaIterator(loader, TisBasedSeedGenerator.PAGE_SIZE, maxIdeas);
+    while (ideas.hasNext()) {
+      keywordTexts.add(ideas.next());
+    }
 
-      do {
-        selector.setPaging(new Paging(offset, TisBasedSeedGenerator.PAGE_SIZE));
+    return keywordTexts;
+  }
 
-        page = tis.get(selector);
-        if (page.getEntries() != null) {
-          for (TargetingIdea targetingIdea : page.getEntries()) {
-            Map<AttributeType, Attribute> data = Maps.toMap(targetingIdea.getData());
+  /**
+   * Retrieves a single page of keyword ideas for the given set of keywords.
+   *
+   * @param keywords the keywords to as a basis for finding new ones
+   * @param offset the index of the first idea on the page
+   * @param pageSize the maximum number of ideas on the page
+   * @return the page of ideas
+   * @throws KeywordOptimizerException in case of an error retrieving keywords from TIS
+   */
+  private TargetingIdeaPage getPage(KeywordCollection keywords, int offset, int pageSize)
+      throws KeywordOptimizerException {
+    final TargetingIdeaSelector selector = getSelector(keywords);
+    selector.setPaging(new Paging(offset, pageSize));
 
-            StringAttribute keyword = (StringAttribute) data.get(AttributeType.KEYWORD_TEXT);
-            keywordTexts.add(keyword.getValue());
-          }
+    try {
+      return rateLimiter.call(new ApiCall<TargetingIdeaPage>() {
+        @Override
+        public TargetingIdeaPage call() throws ApiException, RemoteException {
+          return tis.get().get(selector);
         }
-        offset += TisBasedSeedGenerator.PAGE_SIZE;
-      } while (offset < page.getTotalNumEntries());
-
+      });
     } catch (ApiException e) {
       throw new KeywordOptimizerException("Problem while querying the targeting idea service", e);
     } catch (RemoteException e) {
       throw new KeywordOptimizerException("Problem while connecting to the AdWords API", e);
     }
-
-    return keywordTexts;
   }
 }
@@ -17,35 +17,62 @@ package com.google.api.ads.adwords.keywordoptimizer;
 import com.google.api.ads.adwords.axis.v201509.cm.ApiException;
 import com.google.api.ads.adwords.axis.v201509.cm.Money;
 import com.google.api.ads.adwords.axis.v201509.cm.Paging;
-import com.google.api.ads.adwords.axis.v201509.o.Attribute;
-import com.google.api.ads.adwords.axis.v201509.o.AttributeType;
-import com.google.api.ads.adwords.axis.v201509.o.StringAttribute;
-import com.google.api.ads.adwords.axis.v201509.o.TargetingIdea;
 import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaPage;
 import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaSelector;
 import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaService;
 import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaServiceInterface;
-import com.google.api.ads.common.lib.utils.Maps;
+import com.google.api.ads.adwords.keywordoptimizer.ApiRateLimiter.ApiCall;
+import com.google.api.ads.adwords.keywordoptimizer.TargetingIdeaIterator.PageLoader;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import org.apache.commons.configuration.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Map;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Nullable;
 
 /**
  * Base class for {@link SeedGenerator}s using the {@link TargetingIdeaService} for creating seed
- * keywords. Delegates the creation of the {@link TargetingIdeaSelector} to derived classes and 
+ * keywords. Delegates the creation of the {@link TargetingIdeaSelector}s to derived classes and 
  * implements the extraction of plain text keywords from the results of the 
  * {@link TargetingIdeaService}.
+ *
+ * <p>Derived classes can split their input into several groups (of a configurable size), one
+ * selector each. The groups are queried concurrently and their results are merged. Pages of
+ * results of a single group are fetched one after the other, only as long as they are needed (see
+ * {@link TargetingIdeaIterator}).
  */
 public abstract class TisBasedSeedGenerator extends AbstractSeedGenerator {
+  private static final Logger logger = LoggerFactory.getLogger(TisBasedSeedGenerator.class);
+
   // Page size for retrieving results. All pages are used anyways (not just the first one), so 
   // using a reasonable value here.
   public static final int PAGE_SIZE = 100;
 
-  protected TargetingIdeaServiceInterface tis;
+  // Default number of inputs (URLs, search terms) sent in a single query.
+  public static final int DEFAULT_GROUP_SIZE = 50;
+
+  // Default number of groups queried concurrently.
+  public static final int DEFAULT_PARALLELISM = 4;
+
+  // Services are not thread-safe, so every thread uses its own one.
+  protected ThreadLocal<TargetingIdeaServiceInterface> tis;
+  protected ApiRateLimiter rateLimiter;
+  protected int maxIdeas;
+  protected int groupSize;
+
+  private final ListeningExecutorService executor;
 
   /**
    * Creates a new {@link TisBasedSeedGenerator}.
@@ -53,9 +80,49 @@ public abstract class TisBasedSeedGenerator extends AbstractSeedGenerator {
    * @param context holding shared objects during the optimization process
    * @param maxCpc maximum cpc to be used for keyword evaluation
    */
-  public TisBasedSeedGenerator(OptimizationContext context, @Nullable Money maxCpc) {
+  public TisBasedSeedGenerator(final OptimizationContext context, @Nullable Money maxCpc) {
+    super(maxCpc);
+    Configuration config = context.getConfiguration();
+    rateLimiter = context.getRateLimiter(TargetingIdeaServiceInterface.class);
+    maxIdeas = config.getInt(KeywordOptimizerProperty.SeedGeneratorMaxIdeas.getName(), 0);
+    groupSize = config.getInt(
+        KeywordOptimizerProperty.SeedGeneratorGroupSize.getName(), DEFAULT_GROUP_SIZE);
+    executor = KeywordOptimizerUtil.createExecutor(config.getInt(
+        KeywordOptimizerProperty.SeedGeneratorParallelism.getName(), DEFAULT_PARALLELISM),
+        "tis-seed-generator-%d");
+
+    tis = new ThreadLocal<TargetingIdeaServiceInterface>() {
+      @Override
+      protected TargetingIdeaServiceInterface initialValue() {
+        AdWordsApiUtil util = context.getAdwordsApiUtil();
+        synchronized (util) {
+          return util.getService(TargetingIdeaServiceInterface.class);
+        }
+      }
+    };
+  }
+
+  /**
+   * Creates a new {@link TisBasedSeedGenerator} using the given (thread-safe) service.
+   *
+   * @param service the service used for all requests
+   * @param maxCpc maximum cpc to be used for keyword evaluation
+   * @param groupSize maximum number of inputs sent in a single query
+   * @param parallelism maximum number of groups queried concurrently
+   */
+  TisBasedSeedGenerator(final TargetingIdeaServiceInterface service, @Nullable Money maxCpc,
+      int groupSize, int parallelism) {
     super(maxCpc);
-    tis = context.getAdwordsApiUtil().getService(TargetingIdeaServiceInterface.class);
+    rateLimiter = ApiRateLimiter.unlimited("TargetingIdeaService");
+    this.groupSize = groupSize;
+    executor = KeywordOptimizerUtil.createExecutor(parallelism, "tis-seed-generator-%d");
+
+    tis = new ThreadLocal<TargetingIdeaServiceInterface>() {
+      @Override
+      protected TargetingIdeaServiceInterface initialValue() {
+        return service;
+      }
+    };
   }
 
   /**
@@ -63,37 +130,97 @@ public abstract class TisBasedSeedGenerator extends AbstractSeedGenerator {
    */
   protected abstract TargetingIdeaSelector getSelector();
 
+  /**
+   * Returns the selectors for the {@link TargetingIdeaService}, one for each group of inputs. By
+   * default, this is just the single selector returned by {@link #getSelector()}.
+   *
+   * @return the selectors for the {@link TargetingIdeaService}
+   */
+  protected List<TargetingIdeaSelector> getSelectors() {
+    return Collections.singletonList(getSelector());
+  }
+
   @Override
   protected Collection<String> getKeywords() throws KeywordOptimizerException {
-    TargetingIdeaSelector selector = getSelector();
-    Collection<String> keywords = new ArrayList<String>();
+    List<TargetingIdeaSelector> selectors = getSelectors();
+
+    List<ListenableFuture<List<String>>> groups = new ArrayList<ListenableFuture<List<String>>>();
+    for (final TargetingIdeaSelector selector : selectors) {
+      groups.add(executor.submit(new Callable<List<String>>() {
+        @Override
+        public List<String> call() throws KeywordOptimizerException {
+          return getKeywords(selector);
+        }
+      }));
+    }
 
-    try {
-      int offset = 0;
+    // Merge the groups in order, dropping duplicates.
+    Set<String> keywords = new LinkedHashSet<String>();
+    for (List<String> group : KeywordOptimizerUtil.waitFor(Futures.allAsList(groups))) {
+      for (String keyword : group) {
+        if (maxIdeas > 0 && keywords.size() >= maxIdeas) {
+          break;
+        }
+        keywords.add(keyword);
+      }
+    }
 
-      TargetingIdeaPage page = null;
+    if (selectors.size() > 1) {
+      logger.info("Found " + keywords.size() + " seed keywords in " + selectors.size() + " groups");
+    }
+    return keywords;
+  }
+
+  /**
+   * Retrieves all plain text keywords for a single selector.
+   *
+   * @param selector the selector for the {@link TargetingIdeaService}
+   * @return a list of plain text keywords
+   * @throws KeywordOptimizerException in case of an error retrieving keywords from TIS
+   */
+  private List<String> getKeywords(final TargetingIdeaSelector selector)
+      throws KeywordOptimizerException {
+    List<String> keywords = new ArrayList<String>();
+
+    TargetingIdeaIterator ideas = new TargetingIdeaIterator(new PageLoader() {
+      @Override
+      public TargetingIdeaPage load(int offset, int pageSize) throws KeywordOptimizerException {
+        return getPage(selector, offset, pageSize);
+      }
+    }, PAGE_SIZE, maxIdeas);
+    while (ideas.hasNext()) {
+      keywords.add(ideas.next());
+    }
 
-      do {
-        selector.setPaging(new Paging(offset, PAGE_SIZE));
+    return keywords;
+  }
 
-        page = tis.get(selector);
-        if (page.getEntries() != null) {
-          for (TargetingIdea targetingIdea : page.getEntries()) {
-            Map<AttributeType, Attribute> data = Maps.toMap(targetingIdea.getData());
+  /**
+   * Retrieves a single page of keyword ideas.
+   *
+   * @param selector the selector for the {@link TargetingIdeaService}
+   * @param offset the index of the first idea on the page
+   * @param pageSize the maximum number of ideas on the page
+   * @return the page of ideas
+   * @throws KeywordOptimizerException in case of an error retrieving keywords from TIS
+   */
+  private TargetingIdeaPage getPage(
+      final TargetingIdeaSelector selector, int offset, int pageSize)
+      throws KeywordOptimizerException {
+    // Pages of a single group are retrieved one after the other, so the selector can be reused.
+    selector.setPaging(new Paging(offset, pageSize));
 
-            StringAttribute keyword = (StringAttribute) data.get(AttributeType.KEYWORD_TEXT);
-            keywords.add(keyword.getValue());
-          }
+    try {
+      return rateLimiter.call(new ApiCall<TargetingIdeaPage>() {
+        @Override
+        public TargetingIdeaPage call() throws ApiException, RemoteException {
+          return tis.get().get(selector);
         }
-        offset += PAGE_SIZE;
-      } while (offset < page.getTotalNumEntries());
-
+      });
     } catch (ApiException e) {
       throw new KeywordOptimizerException("Problem while querying the targeting idea service", e);
     } catch (RemoteException e) {
       throw new KeywordOptimizerException("Problem while connecting to the AdWords API", e);
     }
-
-    return keywords;
   }
 }
@@ -22,9 +22,13 @@ import com.google.api.ads.adwords.axis.v201509.o.RelatedToQuerySearchParameter;
 import com.google.api.ads.adwords.axis.v201509.o.RequestType;
 import com.google.api.ads.adwords.axis.v201509.o.SearchParameter;
 import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaSelector;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaService;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaServiceInterface;
+import com.google.common.collect.Iterables;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -45,11 +49,44 @@ public class TisSearchTermsSeedGenerator extends TisBasedSeedGenerator {
    */
   public TisSearchTermsSeedGenerator(OptimizationContext context, @Nullable Money maxCpc) {
     super(context, maxCpc);
-    seedKeywords = new HashSet<String>();
+    seedKeywords = new LinkedHashSet<String>();
+  }
+
+  /**
+   * Creates a new {@link TisSearchTermsSeedGenerator} using the given (thread-safe) service.
+   *
+   * @param service the service used for all requests
+   * @param maxCpc maximum cpc to be used for keyword evaluation
+   * @param groupSize maximum number of search terms sent in a single query
+   * @param parallelism maximum number of groups queried concurrently
+   */
+  TisSearchTermsSeedGenerator(TargetingIdeaServiceInterface service, @Nullable Money maxCpc,
+      int groupSize, int parallelism) {
+    super(service, maxCpc, groupSize, parallelism);
+    seedKeywords = new LinkedHashSet<String>();
   }
 
   @Override
   protected TargetingIdeaSelector getSelector() {
+    return getSelector(seedKeywords);
+  }
+
+  @Override
+  protected List<TargetingIdeaSelector> getSelectors() {
+    List<TargetingIdeaSelector> selectors = new ArrayList<TargetingIdeaSelector>();
+    for (List<String> group : Iterables.partition(seedKeywords, Math.max(1, groupSize))) {
+      selectors.add(getSelector(group));
+    }
+    return selectors;
+  }
+
+  /**
+   * Creates a selector for the {@link TargetingIdeaService} for a given group of search terms.
+   *
+   * @param group the search terms to be used
+   * @return the selector for the {@link TargetingIdeaService}
+   */
+  private TargetingIdeaSelector getSelector(Collection<String> group) {
     TargetingIdeaSelector selector = new TargetingIdeaSelector();
     selector.setRequestType(RequestType.IDEAS);
     selector.setIdeaType(IdeaType.KEYWORD);
@@ -62,7 +99,7 @@ public class TisSearchTermsSeedGenerator extends TisBasedSeedGenerator {
     // Get ideas related to query search parameter.
     RelatedToQuerySearchParameter relatedToQuerySearchParameter =
         new RelatedToQuerySearchParameter();
-    relatedToQuerySearchParameter.setQueries(seedKeywords.toArray(new String[] {}));
+    relatedToQuerySearchParameter.setQueries(group.toArray(new String[] {}));
     searchParameters.add(relatedToQuerySearchParameter);
 
     // Now add all other criteria.
@@ -22,9 +22,12 @@ import com.google.api.ads.adwords.axis.v201509.o.RelatedToUrlSearchParameter;
 import com.google.api.ads.adwords.axis.v201509.o.RequestType;
 import com.google.api.ads.adwords.axis.v201509.o.SearchParameter;
 import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaSelector;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaService;
+import com.google.common.collect.Iterables;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -44,11 +47,30 @@ public class TisUrlSeedGenerator extends TisBasedSeedGenerator {
    */
   public TisUrlSeedGenerator(OptimizationContext context, @Nullable Money maxCpc) {
     super(context, maxCpc);
-    urls = new HashSet<String>();
+    urls = new LinkedHashSet<String>();
   }
 
   @Override
   protected TargetingIdeaSelector getSelector() {
+    return getSelector(urls);
+  }
+
+  @Override
+  protected List<TargetingIdeaSelector> getSelectors() {
+    List<TargetingIdeaSelector> selectors = new ArrayList<TargetingIdeaSelector>();
+    for (List<String> group : Iterables.partition(urls, Math.max(1, groupSize))) {
+      selectors.add(getSelector(group));
+    }
+    return selectors;
+  }
+
+  /**
+   * Creates a selector for the {@link TargetingIdeaService} for a given group of URLs.
+   *
+   * @param group the URLs to be used
+   * @return the selector for the {@link TargetingIdeaService}
+   */
+  private TargetingIdeaSelector getSelector(Collection<String> group) {
     TargetingIdeaSelector selector = new TargetingIdeaSelector();
     selector.setRequestType(RequestType.IDEAS);
     selector.setIdeaType(IdeaType.KEYWORD);
@@ -60,7 +82,7 @@ public class TisUrlSeedGenerator extends TisBasedSeedGenerator {
 
     // Get ideas related to query search parameter.
     RelatedToUrlSearchParameter relatedToUrlSearchParameter = new RelatedToUrlSearchParameter();
-    relatedToUrlSearchParameter.setUrls(urls.toArray(new String[] {}));
+    relatedToUrlSearchParameter.setUrls(group.toArray(new String[] {}));
     searchParameters.add(relatedToUrlSearchParameter);
 
     // Now add all other criteria.
@@ -24,35 +24,55 @@ import org.apache.commons.lang.SystemUtils;
 /**
  * Represents a combined traffic estimate for a single {@link Keyword}, consisting of minimum, mean
  * and maximum traffic statistics.
+ *
+ * <p>Only minimum and maximum are kept, in a compact primitive form (see
+ * {@link CompactStatsEstimate}). The mean is derived from them on demand, so the frequently used
+ * mean values (see {@link #getMeanClicksPerDay()}) can be read without allocating anything.
+ * {@link StatsEstimate} objects are only created when asked for them the first time, and then
+ * returned on every further call.
  */
 public class TrafficEstimate {
-  private final StatsEstimate min;
-  private final StatsEstimate mean;
-  private final StatsEstimate max;
+  private final CompactStatsEstimate min;
+  private final CompactStatsEstimate max;
+
+  // Created lazily, see getMin(), getMean() and getMax().
+  private volatile StatsEstimate minEstimate;
+  private volatile StatsEstimate meanEstimate;
+  private volatile StatsEstimate maxEstimate;
 
   /**
-   * Creates a new combined estimate by specifying all attributes.
-   * 
+   * Creates a new combined estimate by specifying minimum and maximum estimates (mean is
+   * automatically calculated).
+   *
    * @param min the minimum estimated statistics
-   * @param mean the mean estimated statistics
    * @param max the maximum estimated statistics
    */
-  public TrafficEstimate(StatsEstimate min, StatsEstimate mean, StatsEstimate max) {
+  public TrafficEstimate(CompactStatsEstimate min, CompactStatsEstimate max) {
     this.min = min;
-    this.mean = mean;
     this.max = max;
   }
 
+  /**
+   * Creates a new combined estimate by specifying minimum, mean and maximum estimates.
+   *
+   * @param min the minimum estimated statistics
+   * @param mean ignored, the mean is always calculated from minimum and maximum
+   * @param max the maximum estimated statistics
+   * @deprecated the mean is calculated automatically, use
+   *     {@link #TrafficEstimate(StatsEstimate, StatsEstimate)} instead
+   */
+  @Deprecated
+  public TrafficEstimate(StatsEstimate min, StatsEstimate mean, StatsEstimate max) {
+    this(min, max);
+  }
+
   /**
    * Creates a new combined estimate from a {@link KeywordEstimate} (wrapping min and max values).
    * 
    * @param keywordEstimate the keyword estimate, as given by the {@link TrafficEstimatorService}
    */
   public TrafficEstimate(KeywordEstimate keywordEstimate) {
-    this.min = keywordEstimate.getMin();
-    this.mean =
-        KeywordOptimizerUtil.calculateMean(keywordEstimate.getMin(), keywordEstimate.getMax());
-    this.max = keywordEstimate.getMax();
+    this(keywordEstimate.getMin(), keywordEstimate.getMax());
   }
 
   /**
@@ -63,41 +83,96 @@ public class TrafficEstimate {
    * @param max the maximum estimated statistics
    */
   public TrafficEstimate(StatsEstimate min, StatsEstimate max) {
-    this.min = min;
-    this.mean = KeywordOptimizerUtil.calculateMean(min, max);
-    this.max = max;
+    this(CompactStatsEstimate.of(min), CompactStatsEstimate.of(max));
   }
 
   /**
-   * Returns the minimum estimated statistics.
+   * Returns the minimum estimated statistics (created on the first call, must not be modified).
    */
   public StatsEstimate getMin() {
-    return min;
+    StatsEstimate estimate = minEstimate;
+    if (estimate == null) {
+      estimate = min.toStatsEstimate();
+      minEstimate = estimate;
+    }
+    return estimate;
   }
 
   /**
-   * Returns the mean estimated statistics.
+   * Returns the mean estimated statistics (created on the first call, must not be modified).
    */
   public StatsEstimate getMean() {
-    return mean;
+    StatsEstimate estimate = meanEstimate;
+    if (estimate == null) {
+      estimate = getMeanStats().toStatsEstimate();
+      meanEstimate = estimate;
+    }
+    return estimate;
   }
 
   /**
-   * Returns the maximum estimated statistics.
+   * Returns the maximum estimated statistics (created on the first call, must not be modified).
    */
   public StatsEstimate getMax() {
+    StatsEstimate estimate = maxEstimate;
+    if (estimate == null) {
+      estimate = max.toStatsEstimate();
+      maxEstimate = estimate;
+    }
+    return estimate;
+  }
+
+  /**
+   * Returns the minimum estimated statistics.
+   */
+  public CompactStatsEstimate getMinStats() {
+    return min;
+  }
+
+  /**
+   * Returns the mean estimated statistics (calculated on every call).
+   */
+  public CompactStatsEstimate getMeanStats() {
+    return CompactStatsEstimate.mean(min, max);
+  }
+
+  /**
+   * Returns the maximum estimated statistics.
+   */
+  public CompactStatsEstimate getMaxStats() {
     return max;
   }
 
+  /**
+   * Returns the mean clicks per day ({@link Float#NaN} if unknown).
+   */
+  public float getMeanClicksPerDay() {
+    return CompactStatsEstimate.meanFloat(min.getClicksPerDay(), max.getClicksPerDay());
+  }
+
+  /**
+   * Returns the mean impressions per day ({@link Float#NaN} if unknown).
+   */
+  public float getMeanImpressionsPerDay() {
+    return CompactStatsEstimate.meanFloat(min.getImpressionsPerDay(), max.getImpressionsPerDay());
+  }
+
+  /**
+   * Returns whether the minimum or maximum statistics contain at least one value.
+   */
+  public boolean hasData() {
+    return min.hasData() || max.hasData();
+  }
+
   @Override
   public String toString() {
     StringBuilder out = new StringBuilder();
 
-    out.append("- Min:  ").append(KeywordOptimizerUtil.toString(min))
+    out.append("- Min:  ").append(KeywordOptimizerUtil.toString(getMin()))
         .append(SystemUtils.LINE_SEPARATOR);
-    out.append("- Mean: ").append(KeywordOptimizerUtil.toString(mean))
+    out.append("- Mean: ").append(KeywordOptimizerUtil.toString(getMean()))
         .append(SystemUtils.LINE_SEPARATOR);
-    out.append("- Max:  ").append(KeywordOptimizerUtil.toString(max));
+    out.append("- Max:  ").append(KeywordOptimizerUtil.toString(getMax()));
 
     return out.toString();
   }
@@ -0,0 +1,92 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link AdaptiveBatchSizer} class.
+ */
+@RunWith(JUnit4.class)
+public class AdaptiveBatchSizerTest {
+  private AdaptiveBatchSizer sizer;
+
+  /**
+   * Setup a batch sizer starting at 100 keywords.
+   */
+  @Before
+  public void setUp() {
+    sizer = new AdaptiveBatchSizer(100, 10, 120, 1000);
+  }
+
+  /**
+   * Check that fast requests increase the batch size up to the maximum.
+   */
+  @Test
+  public void checkIncrease() {
+    sizer.onSuccess(100, 100, 500);
+    assertEquals(110, sizer.getBatchSize());
+
+    sizer.onSuccess(110, 110, 500);
+    sizer.onSuccess(120, 120, 500);
+    assertEquals(120, sizer.getBatchSize());
+  }
+
+  /**
+   * Check that requests holding fewer keywords than the batch size do not increase it.
+   */
+  @Test
+  public void checkUnderfilledRequests() {
+    sizer.onSuccess(100, 37, 500);
+    sizer.onSuccess(100, 99, 500);
+    assertEquals(100, sizer.getBatchSize());
+
+    sizer.onSuccess(100, 100, 500);
+    assertEquals(110, sizer.getBatchSize());
+  }
+
+  /**
+   * Check that slow and failed requests halve the batch size down to the minimum.
+   */
+  @Test
+  public void checkDecrease() {
+    sizer.onSuccess(100, 100, 2000);
+    assertEquals(50, sizer.getBatchSize());
+
+    sizer.onOverload(50);
+    sizer.onOverload(25);
+    sizer.onOverload(12);
+    assertEquals(10, sizer.getBatchSize());
+  }
+
+  /**
+   * Check that feedback for requests sent before the last change does not change the batch size
+   * a second time.
+   */
+  @Test
+  public void checkStaleFeedback() {
+    sizer.onOverload(100);
+    sizer.onOverload(100);
+    assertEquals(50, sizer.getBatchSize());
+
+    sizer.onSuccess(100, 100, 500);
+    assertEquals(50, sizer.getBatchSize());
+  }
+}
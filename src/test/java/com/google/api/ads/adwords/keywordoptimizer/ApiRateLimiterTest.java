@@ -0,0 +1,130 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.axis.v201509.cm.ApiError;
+import com.google.api.ads.adwords.axis.v201509.cm.ApiException;
+import com.google.api.ads.adwords.axis.v201509.cm.RateExceededError;
+import com.google.api.ads.adwords.keywordoptimizer.ApiRateLimiter.ApiCall;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.rmi.RemoteException;
+
+/**
+ * Test case for the {@link ApiRateLimiter} class.
+ */
+@RunWith(JUnit4.class)
+public class ApiRateLimiterTest {
+  private ApiRateLimiter rateLimiter;
+
+  /**
+   * Setup a rate limiter with short backoffs.
+   */
+  @Before
+  public void setUp() {
+    rateLimiter = new ApiRateLimiter("TestService", 1000, 3, 1);
+  }
+
+  /**
+   * Check that calls are retried after rate exceeded errors and the rate is lowered.
+   */
+  @Test
+  public void checkRetry() throws Exception {
+    assertEquals("ok", rateLimiter.call(new FailingCall(2)));
+    assertTrue(rateLimiter.getRate() < 1000);
+  }
+
+  /**
+   * Check that the rate is raised again after a run of successful calls, but never above the
+   * configured rate.
+   */
+  @Test
+  public void checkRecovery() throws Exception {
+    rateLimiter.call(new FailingCall(2));
+    double loweredRate = rateLimiter.getRate();
+
+    for (int i = 0; i < 20; i++) {
+      rateLimiter.call(new FailingCall(0));
+    }
+    assertTrue(rateLimiter.getRate() > loweredRate);
+
+    for (int i = 0; i < 200; i++) {
+      rateLimiter.call(new FailingCall(0));
+    }
+    assertEquals(1000, rateLimiter.getRate(), 0.0001);
+  }
+
+  /**
+   * Check that the unlimited rate limiter does not retry calls.
+   */
+  @Test
+  public void checkUnlimited() throws Exception {
+    FailingCall call = new FailingCall(1);
+    try {
+      ApiRateLimiter.unlimited("TestService").call(call);
+      fail("Expected an ApiException");
+    } catch (ApiException e) {
+      assertEquals(1, call.attempts);
+    }
+  }
+
+  /**
+   * Check that the error is passed on once all retries failed.
+   */
+  @Test
+  public void checkMaxRetries() throws Exception {
+    FailingCall call = new FailingCall(10);
+    try {
+      rateLimiter.call(call);
+      fail("Expected an ApiException");
+    } catch (ApiException e) {
+      assertEquals(4, call.attempts);
+    }
+  }
+
+  /**
+   * A call failing with a rate exceeded error a given number of times before it succeeds.
+   */
+  private static class FailingCall implements ApiCall<String> {
+    private final int failures;
+    private int attempts;
+
+    private FailingCall(int failures) {
+      this.failures = failures;
+    }
+
+    @Override
+    public String call() throws ApiException, RemoteException {
+      attempts++;
+      if (attempts <= failures) {
+        RateExceededError error = new RateExceededError();
+        error.setRetryAfterSeconds(0);
+
+        ApiException e = new ApiException();
+        e.setErrors(new ApiError[] {error});
+        throw e;
+      }
+      return "ok";
+    }
+  }
+}
@@ -0,0 +1,149 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test case for the {@link AsyncTrafficEstimatorAdapter} and
+ * {@link AsyncAlternativesFinderAdapter} classes.
+ */
+@RunWith(JUnit4.class)
+public class AsyncAdapterTest {
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private KeywordCollection keywords;
+  private KeywordCollection result;
+  private ListeningExecutorService executor;
+  private CountDownLatch release;
+
+  /**
+   * Setup a sample keyword, a result to be returned and an executor.
+   */
+  @Before
+  public void setUp() {
+    keywords = new KeywordCollection((Money) null);
+    keywords.add(new KeywordInfo(
+        KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.EXACT), null, null));
+    result = new KeywordCollection(keywords);
+    executor = KeywordOptimizerUtil.createExecutor(2, "async-adapter-test-%d");
+    release = new CountDownLatch(1);
+  }
+
+  /**
+   * Shut down the executor.
+   */
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Check that the estimator adapter returns before the estimates are there and passes on the
+   * result.
+   */
+  @Test
+  public void checkEstimateAsync() throws Exception {
+    AsyncTrafficEstimatorAdapter estimator = new AsyncTrafficEstimatorAdapter(
+        new TrafficEstimator() {
+          @Override
+          public KeywordCollection estimate(KeywordCollection keywords)
+              throws KeywordOptimizerException {
+            awaitRelease();
+            return result;
+          }
+        }, executor);
+
+    ListenableFuture<KeywordCollection> estimates = estimator.estimateAsync(keywords);
+    assertFalse(estimates.isDone());
+
+    release.countDown();
+    assertSame(result, estimates.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertSame(result, estimator.estimate(keywords));
+  }
+
+  /**
+   * Check that the alternatives finder adapter returns before the alternatives are there and
+   * passes on the result.
+   */
+  @Test
+  public void checkFindAsync() throws Exception {
+    AsyncAlternativesFinderAdapter finder = new AsyncAlternativesFinderAdapter(
+        new AlternativesFinder() {
+          @Override
+          public KeywordCollection find(KeywordCollection keywords)
+              throws KeywordOptimizerException {
+            awaitRelease();
+            return result;
+          }
+        }, executor);
+
+    ListenableFuture<KeywordCollection> alternatives = finder.findAsync(keywords);
+    assertFalse(alternatives.isDone());
+
+    release.countDown();
+    assertSame(result, alternatives.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    assertSame(result, finder.find(keywords));
+  }
+
+  /**
+   * Check that errors are passed on through the future.
+   */
+  @Test
+  public void checkErrorPropagation() {
+    final KeywordOptimizerException error = new KeywordOptimizerException("Estimation failed");
+    AsyncTrafficEstimator estimator = new AsyncTrafficEstimatorAdapter(new TrafficEstimator() {
+      @Override
+      public KeywordCollection estimate(KeywordCollection keywords)
+          throws KeywordOptimizerException {
+        throw error;
+      }
+    }, executor);
+
+    try {
+      KeywordOptimizerUtil.waitFor(estimator.estimateAsync(keywords));
+      fail("The estimation error should be passed on");
+    } catch (KeywordOptimizerException e) {
+      assertSame(error, e);
+    }
+  }
+
+  private void awaitRelease() throws KeywordOptimizerException {
+    try {
+      assertTrue(release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new KeywordOptimizerException("Interrupted", e);
+    }
+  }
+}
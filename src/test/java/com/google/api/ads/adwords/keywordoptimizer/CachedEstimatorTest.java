@@ -0,0 +1,187 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.api.ads.adwords.axis.v201509.o.StatsEstimate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link CachedEstimator} class.
+ */
+@RunWith(JUnit4.class)
+public class CachedEstimatorTest {
+  private Keyword plumbing;
+  private Keyword plumbingBroad;
+  private Keyword plumbingSpecialist;
+  private Money maxCpc;
+
+  private KeywordCollection keywords;
+
+  private CountingTrafficEstimator countingEstimator;
+
+  /**
+   * Setup some sample keywords.
+   */
+  @Before
+  public void setUp() {
+    plumbing = KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.EXACT);
+    plumbingBroad = KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.BROAD);
+    plumbingSpecialist =
+        KeywordOptimizerUtil.createKeyword("plumbing specialist", KeywordMatchType.EXACT);
+
+    maxCpc = new Money();
+    maxCpc.setMicroAmount(1000000L); // 1 usd
+
+    keywords = new KeywordCollection(maxCpc);
+    keywords.add(new KeywordInfo(plumbing, null, null));
+    keywords.add(new KeywordInfo(plumbingBroad, null, null));
+    keywords.add(new KeywordInfo(plumbingSpecialist, null, null));
+
+    countingEstimator = new CountingTrafficEstimator();
+  }
+
+  /**
+   * Check that cached and retrieved estimates are both returned, and cached ones are not retrieved
+   * again.
+   */
+  @Test
+  public void checkCachedEstimatesReturned() throws KeywordOptimizerException {
+    CachedEstimator estimator = new CachedEstimator(countingEstimator);
+
+    KeywordCollection first = new KeywordCollection(keywords);
+    first.add(new KeywordInfo(plumbing, null, null));
+    estimator.estimate(first);
+    assertEquals(1, countingEstimator.estimatedKeywords);
+
+    KeywordCollection estimates = estimator.estimate(keywords);
+    assertEquals(3, estimates.size());
+    assertTrue(estimates.contains(plumbing));
+    assertTrue(estimates.contains(plumbingBroad));
+    assertTrue(estimates.contains(plumbingSpecialist));
+    for (KeywordInfo estimate : estimates) {
+      assertTrue(estimate.hasEstimate());
+    }
+
+    // Only the 2 keywords which have not been cached yet were retrieved.
+    assertEquals(3, countingEstimator.estimatedKeywords);
+    assertEquals(3, estimator.size());
+  }
+
+  /**
+   * Check that estimates are not shared between different max cpcs.
+   */
+  @Test
+  public void checkContextIsPartOfKey() throws KeywordOptimizerException {
+    CachedEstimator estimator = new CachedEstimator(countingEstimator);
+    estimator.estimate(keywords);
+    assertEquals(3, countingEstimator.estimatedKeywords);
+
+    Money otherCpc = new Money();
+    otherCpc.setMicroAmount(2000000L); // 2 usd
+    KeywordCollection otherKeywords = new KeywordCollection(otherCpc);
+    otherKeywords.add(new KeywordInfo(plumbing, null, null));
+    estimator.estimate(otherKeywords);
+    assertEquals(4, countingEstimator.estimatedKeywords);
+
+    KeywordCollection located = new KeywordCollection(keywords);
+    located.addAdditionalLocation(1023191L);
+    located.add(new KeywordInfo(plumbing, null, null));
+    estimator.estimate(located);
+    assertEquals(5, countingEstimator.estimatedKeywords);
+
+    // Same settings as the first collection, so this one is cached.
+    KeywordCollection same = new KeywordCollection(keywords);
+    same.add(new KeywordInfo(plumbing, null, null));
+    estimator.estimate(same);
+    assertEquals(5, countingEstimator.estimatedKeywords);
+  }
+
+  /**
+   * Check that the cache does not grow beyond its maximum size.
+   */
+  @Test
+  public void checkMaximumSize() throws KeywordOptimizerException {
+    CachedEstimator estimator = new CachedEstimator(countingEstimator, 2, 0);
+    estimator.estimate(keywords);
+
+    assertTrue(estimator.size() <= 2);
+  }
+
+  /**
+   * Check that keywords without an estimate (or without any data) are not estimated again and are
+   * left out of the result the same way when they are first estimated and when they are found in
+   * the negative cache.
+   */
+  @Test
+  public void checkNegativeCache() throws KeywordOptimizerException {
+    countingEstimator.missingKeyword = plumbingBroad;
+    countingEstimator.emptyKeyword = plumbingSpecialist;
+    CachedEstimator estimator = new CachedEstimator(countingEstimator);
+
+    KeywordCollection estimates = estimator.estimate(keywords);
+    assertEquals(1, estimates.size());
+    assertTrue(estimates.contains(plumbing));
+    assertEquals(3, countingEstimator.estimatedKeywords);
+    assertEquals(1, estimator.size());
+
+    estimates = estimator.estimate(keywords);
+    assertEquals(1, estimates.size());
+    assertTrue(estimates.contains(plumbing));
+    assertEquals(3, countingEstimator.estimatedKeywords);
+    assertEquals(2, estimator.getNegativeHitCount());
+  }
+
+  /**
+   * A mock traffic estimator, counting the number of estimated keywords.
+   */
+  private static class CountingTrafficEstimator implements TrafficEstimator {
+    private int estimatedKeywords;
+    private Keyword missingKeyword;
+    private Keyword emptyKeyword;
+
+    @Override
+    public KeywordCollection estimate(KeywordCollection keywords) {
+      KeywordCollection estimates = new KeywordCollection(keywords);
+
+      StatsEstimate stats = new StatsEstimate();
+      stats.setClicksPerDay(10F);
+      stats.setImpressionsPerDay(1000F);
+
+      for (KeywordInfo keyword : keywords) {
+        estimatedKeywords++;
+        if (keyword.getKeyword().equals(missingKeyword)) {
+          continue;
+        }
+
+        TrafficEstimate te = keyword.getKeyword().equals(emptyKeyword)
+            ? new TrafficEstimate(new StatsEstimate(), new StatsEstimate())
+            : new TrafficEstimate(stats, stats);
+        estimates.add(new KeywordInfo(keyword.getKeyword(), te, null));
+      }
+
+      return estimates;
+    }
+  }
+}
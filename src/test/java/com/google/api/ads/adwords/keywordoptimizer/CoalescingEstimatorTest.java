@@ -0,0 +1,260 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.api.ads.adwords.axis.v201509.o.StatsEstimate;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test case for the {@link CoalescingEstimator} class.
+ */
+@RunWith(JUnit4.class)
+public class CoalescingEstimatorTest {
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private Keyword plumbing;
+  private Keyword plumbingBroad;
+  private Keyword plumbingSpecialist;
+  private Money maxCpc;
+
+  private BlockingTrafficEstimator blockingEstimator;
+  private CoalescingEstimator estimator;
+  private ExecutorService executor;
+
+  /**
+   * Setup some sample keywords and an estimator blocking on the "plumbing" keyword.
+   */
+  @Before
+  public void setUp() {
+    plumbing = KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.EXACT);
+    plumbingBroad = KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.BROAD);
+    plumbingSpecialist =
+        KeywordOptimizerUtil.createKeyword("plumbing specialist", KeywordMatchType.EXACT);
+
+    maxCpc = new Money();
+    maxCpc.setMicroAmount(1000000L); // 1 usd
+
+    blockingEstimator = new BlockingTrafficEstimator(plumbing);
+    estimator = new CoalescingEstimator(blockingEstimator);
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() {
+    blockingEstimator.release.countDown();
+    executor.shutdownNow();
+  }
+
+  /**
+   * Check that a keyword being estimated is not estimated again by a concurrent caller, who gets
+   * the in-flight estimate for its own keyword instance. The concurrent caller must estimate its
+   * other keywords before waiting, so callers never wait for each other.
+   */
+  @Test
+  public void checkCoalescing() throws Exception {
+    Future<KeywordCollection> first = submit(plumbing, plumbingBroad);
+    awaitCall();
+
+    Keyword otherPlumbing = KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.EXACT);
+    Future<KeywordCollection> second = submit(otherPlumbing, plumbingSpecialist);
+    awaitCall();
+    awaitCoalesced(1);
+
+    // The second caller estimated its own keyword although the first one is still blocked.
+    assertEquals(3, blockingEstimator.estimatedKeywords.get());
+    assertFalse(first.isDone());
+    assertFalse(second.isDone());
+
+    blockingEstimator.release.countDown();
+
+    KeywordCollection firstEstimates = first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    assertEquals(2, firstEstimates.size());
+
+    KeywordCollection secondEstimates = second.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    assertEquals(2, secondEstimates.size());
+    assertNotNull(findEstimate(secondEstimates, otherPlumbing));
+    assertNotNull(findEstimate(secondEstimates, plumbingSpecialist));
+
+    assertEquals(3, blockingEstimator.estimatedKeywords.get());
+    assertEquals(1, estimator.getCoalescedCount());
+  }
+
+  /**
+   * Check that an error of the in-flight request is passed on to all waiting callers, and that the
+   * keyword can be estimated again afterwards.
+   */
+  @Test
+  public void checkErrorPropagation() throws Exception {
+    KeywordOptimizerException failure = new KeywordOptimizerException("Estimation failed");
+    blockingEstimator.failure = failure;
+
+    Future<KeywordCollection> first = submit(plumbing);
+    awaitCall();
+    Future<KeywordCollection> second = submit(plumbing);
+    awaitCoalesced(1);
+
+    blockingEstimator.release.countDown();
+    assertSame(failure, getFailure(first));
+    assertSame(failure, getFailure(second));
+
+    blockingEstimator.failure = null;
+    KeywordCollection estimates = submit(plumbing).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    assertEquals(1, estimates.size());
+    assertEquals(2, blockingEstimator.estimatedKeywords.get());
+  }
+
+  /**
+   * Check that nothing is kept once a request has finished.
+   */
+  @Test
+  public void checkNothingKept() throws KeywordOptimizerException {
+    blockingEstimator.release.countDown();
+
+    estimator.estimate(createKeywords(plumbing));
+    estimator.estimate(createKeywords(plumbing));
+
+    assertEquals(2, blockingEstimator.estimatedKeywords.get());
+    assertEquals(0, estimator.getCoalescedCount());
+  }
+
+  private KeywordCollection createKeywords(Keyword... keywords) {
+    KeywordCollection collection = new KeywordCollection(maxCpc);
+    for (Keyword keyword : keywords) {
+      collection.add(new KeywordInfo(keyword, null, null));
+    }
+    return collection;
+  }
+
+  private Future<KeywordCollection> submit(Keyword... keywords) {
+    final KeywordCollection collection = createKeywords(keywords);
+    return executor.submit(new Callable<KeywordCollection>() {
+      @Override
+      public KeywordCollection call() throws KeywordOptimizerException {
+        return estimator.estimate(collection);
+      }
+    });
+  }
+
+  /**
+   * Waits until the nested estimator has been called (once more).
+   */
+  private void awaitCall() throws InterruptedException {
+    assertTrue(blockingEstimator.calls.tryAcquire(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Waits until the given number of keywords has been attached to in-flight requests.
+   */
+  private void awaitCoalesced(long count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS);
+    while (estimator.getCoalescedCount() < count) {
+      if (System.currentTimeMillis() > deadline) {
+        fail("Keywords were not coalesced");
+      }
+      Thread.sleep(1);
+    }
+  }
+
+  private static Throwable getFailure(Future<KeywordCollection> future) throws Exception {
+    try {
+      future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      fail("Expected the estimation to fail");
+      return null;
+    } catch (ExecutionException e) {
+      return e.getCause();
+    }
+  }
+
+  private static KeywordInfo findEstimate(KeywordCollection estimates, Keyword keyword) {
+    for (KeywordInfo estimate : estimates) {
+      if (estimate.getKeyword() == keyword) {
+        return estimate;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Estimator returning the same estimate for all keywords, which blocks all calls including a
+   * given keyword until released.
+   */
+  private static class BlockingTrafficEstimator implements TrafficEstimator {
+    private final Keyword blockingKeyword;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final Semaphore calls = new Semaphore(0);
+    private final AtomicInteger estimatedKeywords = new AtomicInteger();
+    private volatile KeywordOptimizerException failure;
+
+    private BlockingTrafficEstimator(Keyword blockingKeyword) {
+      this.blockingKeyword = blockingKeyword;
+    }
+
+    @Override
+    public KeywordCollection estimate(KeywordCollection keywords)
+        throws KeywordOptimizerException {
+      estimatedKeywords.addAndGet(keywords.size());
+      calls.release();
+
+      if (keywords.contains(blockingKeyword)) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new KeywordOptimizerException("Interrupted", e);
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+
+      StatsEstimate stats = new StatsEstimate();
+      stats.setClicksPerDay(10F);
+      stats.setImpressionsPerDay(1000F);
+
+      TrafficEstimate estimate = new TrafficEstimate(stats, stats);
+
+      KeywordCollection estimates = new KeywordCollection(keywords);
+      for (KeywordInfo keyword : keywords) {
+        estimates.add(new KeywordInfo(keyword.getKeyword(), estimate, null));
+      }
+      return estimates;
+    }
+  }
+}
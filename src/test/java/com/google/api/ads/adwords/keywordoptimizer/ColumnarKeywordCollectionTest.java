@@ -0,0 +1,140 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.api.ads.adwords.axis.v201509.o.StatsEstimate;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Test case for the {@link ColumnarKeywordCollection} class.
+ */
+@RunWith(JUnit4.class)
+public class ColumnarKeywordCollectionTest {
+  private KeywordCollection keywords;
+  private KeywordInfo plumbing;
+
+  /**
+   * Setup some sample keywords with estimates and scores.
+   */
+  @Before
+  public void setUp() {
+    Money maxCpc = new Money();
+    maxCpc.setMicroAmount(1000000L); // 1 usd
+
+    keywords = new KeywordCollection(maxCpc);
+    keywords.addAdditionalLocation(1023191L);
+
+    Random random = new Random(42);
+    for (int i = 0; i < 1000; i++) {
+      Keyword keyword = KeywordOptimizerUtil.createKeyword("keyword " + i, KeywordMatchType.EXACT);
+      StatsEstimate min = new StatsEstimate();
+      min.setClicksPerDay((float) i);
+      StatsEstimate max = new StatsEstimate();
+      max.setClicksPerDay((float) (2 * i));
+      Money cost = new Money();
+      cost.setMicroAmount(i * 1000L);
+      max.setTotalCost(cost);
+
+      keywords.add(new KeywordInfo(
+          keyword, new TrafficEstimate(min, max), (double) random.nextInt(500)));
+    }
+
+    plumbing = new KeywordInfo(
+        KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.EXACT), null, null);
+  }
+
+  /**
+   * Check that keywords, estimates and scores survive the conversion in both directions.
+   */
+  @Test
+  public void checkConversion() {
+    keywords.add(plumbing);
+    ColumnarKeywordCollection columnar = ColumnarKeywordCollection.of(keywords);
+    KeywordCollection converted = columnar.toKeywordCollection();
+
+    assertEquals(1001, columnar.size());
+    assertEquals(1000, columnar.getScoredCount());
+    assertEquals(keywords.getAverageScore(), columnar.getAverageScore(), 0.0001);
+    assertEquals(1, converted.getAdditionalCriteria().size());
+
+    for (KeywordInfo keyword : converted) {
+      if (!keyword.hasEstimate()) {
+        assertEquals("plumbing", keyword.getKeyword().getText());
+        assertFalse(keyword.hasScore());
+        continue;
+      }
+      int i = Integer.parseInt(keyword.getKeyword().getText().substring("keyword ".length()));
+      assertEquals(i, keyword.getEstimate().getMin().getClicksPerDay(), 0);
+      assertEquals(1.5 * i, keyword.getEstimate().getMean().getClicksPerDay(), 0.0001);
+      assertNull(keyword.getEstimate().getMin().getTotalCost());
+      assertEquals(i * 1000L,
+          keyword.getEstimate().getMax().getTotalCost().getMicroAmount().longValue());
+    }
+  }
+
+  /**
+   * Check that selecting and sorting by score returns the same scores as for the
+   * {@link KeywordCollection}, keywords without a score last.
+   */
+  @Test
+  public void checkBestAndSorted() {
+    ColumnarKeywordCollection columnar = ColumnarKeywordCollection.of(keywords);
+    columnar.add(plumbing);
+
+    List<KeywordInfo> best = columnar.getBest(50).getListSortedByScore();
+    List<KeywordInfo> expected = keywords.getBest(50).getListSortedByScore();
+    assertEquals(50, best.size());
+    for (int i = 0; i < 50; i++) {
+      assertEquals(expected.get(i).getScore(), best.get(i).getScore(), 0);
+    }
+
+    List<KeywordInfo> sorted = columnar.getListSortedByScore();
+    assertEquals(1001, sorted.size());
+    assertFalse(sorted.get(1000).hasScore());
+    for (int i = 1; i < 1000; i++) {
+      assertTrue(sorted.get(i - 1).getScore() >= sorted.get(i).getScore());
+    }
+  }
+
+  /**
+   * Check that adding a keyword again replaces its row and score.
+   */
+  @Test
+  public void checkReplace() {
+    ColumnarKeywordCollection columnar = new ColumnarKeywordCollection(keywords);
+    columnar.add(new KeywordInfo(plumbing.getKeyword(), null, 1d));
+    columnar.add(new KeywordInfo(plumbing.getKeyword(), null, 3d));
+
+    assertEquals(1, columnar.size());
+    assertTrue(columnar.contains(plumbing.getKeyword()));
+    assertEquals(3d, columnar.getScore(0), 0);
+    assertEquals(3d, columnar.getAverageScore(), 0);
+  }
+}
@@ -14,6 +14,8 @@
 
 package com.google.api.ads.adwords.keywordoptimizer;
 
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.core.Is.isA;
 
 import org.apache.commons.cli.UnrecognizedOptionException;
@@ -69,12 +71,14 @@ public class CommandLineTest {
   }
 
   /**
-   * Checks if specifying multiple seed arguments throws an exception.
+   * Checks if specifying multiple seed arguments is accepted (so this only fails later on, because
+   * there are no AdWords API credentials).
    */
   @Test
   public void checkMultipleSeedArguments() throws KeywordOptimizerException {
     thrown.expect(KeywordOptimizerException.class);
-    KeywordOptimizer.run("-sk plumber plumbing -su www.google.com");
+    thrown.expectMessage(not(containsString("seed")));
+    KeywordOptimizer.run("-sk plumber plumbing -su www.google.com -cpc 1.0 -m EXACT");
   }
 
   /**
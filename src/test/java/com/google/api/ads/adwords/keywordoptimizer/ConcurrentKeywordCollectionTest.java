@@ -0,0 +1,126 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.api.ads.adwords.keywordoptimizer.ConcurrentKeywordCollection.MergePolicy;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Test case for the {@link ConcurrentKeywordCollection} class.
+ */
+@RunWith(JUnit4.class)
+public class ConcurrentKeywordCollectionTest {
+  private KeywordCollection settings;
+  private Keyword plumbing;
+
+  /**
+   * Setup the settings and a sample keyword.
+   */
+  @Before
+  public void setUp() {
+    Money maxCpc = new Money();
+    maxCpc.setMicroAmount(1000000L); // 1 usd
+
+    settings = new KeywordCollection(maxCpc);
+    settings.addAdditionalLanguage(1000L);
+    plumbing = KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.EXACT);
+  }
+
+  /**
+   * Check that the merge policies keep the right information.
+   */
+  @Test
+  public void checkMergePolicies() {
+    ConcurrentKeywordCollection first =
+        new ConcurrentKeywordCollection(settings, MergePolicy.KEEP_FIRST);
+    assertTrue(first.add(new KeywordInfo(plumbing, null, 1d)));
+    assertFalse(first.add(new KeywordInfo(plumbing, null, 2d)));
+    assertEquals(1d, first.get(plumbing).getScore(), 0);
+
+    ConcurrentKeywordCollection replace =
+        new ConcurrentKeywordCollection(settings, MergePolicy.REPLACE);
+    replace.add(new KeywordInfo(plumbing, null, 2d));
+    assertTrue(replace.add(new KeywordInfo(plumbing, null, 1d)));
+    assertEquals(1d, replace.get(plumbing).getScore(), 0);
+
+    ConcurrentKeywordCollection best =
+        new ConcurrentKeywordCollection(settings, MergePolicy.KEEP_BEST_SCORE);
+    assertTrue(best.add(new KeywordInfo(plumbing, null, null)));
+    assertTrue(best.add(new KeywordInfo(plumbing, null, 2d)));
+    assertFalse(best.add(new KeywordInfo(plumbing, null, 1d)));
+    assertFalse(best.add(new KeywordInfo(plumbing, null, null)));
+    assertEquals(2d, best.get(plumbing).getScore(), 0);
+    assertEquals(1, best.size());
+  }
+
+  /**
+   * Check that concurrent adds keep the best score of every keyword and that the snapshot takes
+   * over the settings.
+   */
+  @Test
+  public void checkConcurrentAdds() throws InterruptedException {
+    final ConcurrentKeywordCollection keywords =
+        new ConcurrentKeywordCollection(settings, MergePolicy.KEEP_BEST_SCORE);
+    final CountDownLatch start = new CountDownLatch(1);
+    final int threadCount = 8;
+
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < threadCount; t++) {
+      final int offset = t;
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < 100; i++) {
+            Keyword keyword =
+                KeywordOptimizerUtil.createKeyword("keyword " + i, KeywordMatchType.EXACT);
+            keywords.add(new KeywordInfo(keyword, null, (double) (i + offset)));
+          }
+        }
+      };
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    KeywordCollection snapshot = keywords.toKeywordCollection();
+    assertEquals(100, snapshot.size());
+    assertEquals(threadCount - 1 + 99, snapshot.getMaxScore(), 0);
+    assertEquals(threadCount - 1, snapshot.getMinScore(), 0);
+    assertEquals(settings.getAdditionalCriteria(), snapshot.getAdditionalCriteria());
+  }
+}
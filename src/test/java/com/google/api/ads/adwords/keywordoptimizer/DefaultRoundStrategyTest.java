@@ -0,0 +1,111 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.List;
+
+/**
+ * Test case for the {@link DefaultRoundStrategy} class.
+ */
+@RunWith(JUnit4.class)
+public class DefaultRoundStrategyTest {
+  private KeywordCollection seed;
+  private AlternativesFinder alternativesFinder;
+  private Evaluator evaluator;
+
+  /**
+   * Setup a seed population, a finder appending a letter to every keyword and an evaluator
+   * scoring keywords by their text.
+   */
+  @Before
+  public void setUp() {
+    seed = new KeywordCollection((Money) null);
+    for (int i = 0; i < 20; i++) {
+      seed.add(new KeywordInfo(
+          KeywordOptimizerUtil.createKeyword("keyword " + i, KeywordMatchType.EXACT), null,
+          (double) i));
+    }
+
+    alternativesFinder = new AlternativesFinder() {
+      @Override
+      public KeywordCollection find(KeywordCollection keywords) {
+        KeywordCollection alternatives = new KeywordCollection(keywords);
+        for (KeywordInfo info : keywords) {
+          for (char c = 'a'; c <= 'c'; c++) {
+            alternatives.add(new KeywordInfo(KeywordOptimizerUtil.createKeyword(
+                info.getKeyword().getText() + c, KeywordMatchType.EXACT), null, null));
+          }
+        }
+        return alternatives;
+      }
+    };
+
+    evaluator = new Evaluator() {
+      @Override
+      public KeywordCollection evaluate(KeywordCollection keywords) {
+        KeywordCollection evaluated = new KeywordCollection(keywords);
+        for (KeywordInfo info : keywords) {
+          String text = info.getKeyword().getText();
+          evaluated.add(new KeywordInfo(
+              info.getKeyword(), null, (double) (text.length() * 100 + text.hashCode() % 100)));
+        }
+        return evaluated;
+      }
+    };
+  }
+
+  /**
+   * Check that the columnar population yields the same rounds as the default one.
+   */
+  @Test
+  public void checkColumnarPopulation() throws KeywordOptimizerException {
+    RoundStrategy strategy = new DefaultRoundStrategy(3, null, 15, 5);
+    RoundStrategy columnarStrategy = new DefaultRoundStrategy(3, null, 15, 5, true);
+
+    KeywordCollection population = seed;
+    KeywordCollection columnarPopulation = seed;
+    for (int round = 0; round < 3; round++) {
+      population = strategy.nextRound(population, alternativesFinder, evaluator);
+      columnarPopulation =
+          columnarStrategy.nextRound(columnarPopulation, alternativesFinder, evaluator);
+
+      assertEquals(15, columnarPopulation.size());
+      assertEquals(population.getAverageScore(), columnarPopulation.getAverageScore(), 0.0001);
+      assertEquals(toTexts(population.getListSortedByScore()),
+          toTexts(columnarPopulation.getListSortedByScore()));
+    }
+
+    assertNull(columnarStrategy.nextRound(columnarPopulation, alternativesFinder, evaluator));
+  }
+
+  private static String toTexts(List<KeywordInfo> keywords) {
+    StringBuilder texts = new StringBuilder();
+    for (KeywordInfo info : keywords) {
+      texts.append(info.getKeyword().getText()).append(':').append(info.getScore()).append(';');
+    }
+    return texts.toString();
+  }
+}
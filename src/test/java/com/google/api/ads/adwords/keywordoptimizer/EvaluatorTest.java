@@ -15,7 +15,10 @@
 package com.google.api.ads.adwords.keywordoptimizer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
 import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
@@ -154,6 +157,89 @@ public class EvaluatorTest {
     assertEquals(1500D, evaluations.getAverageScore(), 0);
   }
 
+  /**
+   * Checks that scoring a columnar collection gives the same scores as scoring the estimates one
+   * by one, both for the built-in calculators and for adapted custom ones.
+   */
+  @Test
+  public void checkBatchScores() throws KeywordOptimizerException {
+    ColumnarKeywordCollection columns = new ColumnarKeywordCollection(maxCpc);
+    for (int i = 0; i < 100; i++) {
+      StatsEstimate min = new StatsEstimate();
+      min.setClicksPerDay(i / 3F);
+      min.setImpressionsPerDay(i * 7F);
+      StatsEstimate max = new StatsEstimate();
+      max.setClicksPerDay(i / 2F);
+      max.setImpressionsPerDay(i * 11F);
+      Keyword keyword = KeywordOptimizerUtil.createKeyword("keyword " + i, KeywordMatchType.EXACT);
+      columns.add(new KeywordInfo(keyword, new TrafficEstimate(min, max), null));
+    }
+
+    ScoreCalculator custom = new ScoreCalculator() {
+      @Override
+      public double calculate(TrafficEstimate estimate) {
+        return estimate.getMaxStats().getClicksPerDay();
+      }
+    };
+    BatchScoreCalculator[] calculators = {new ClicksScoreCalculator(),
+        new ImpressionsScoreCalculator(), new BatchScoreCalculatorAdapter(custom)};
+
+    for (BatchScoreCalculator calculator : calculators) {
+      double[] scores = new double[columns.size()];
+      calculator.calculate(columns, scores);
+      for (int row = 0; row < columns.size(); row++) {
+        assertEquals(calculator.calculate(columns.getEstimate(row)), scores[row], 0);
+      }
+    }
+  }
+
+  /**
+   * Checks that scoring a columnar collection fails for keywords without estimate, just like
+   * scoring their estimates one by one.
+   */
+  @Test
+  public void checkBatchScoresWithoutEstimate() {
+    ColumnarKeywordCollection columns = new ColumnarKeywordCollection(maxCpc);
+    columns.add(new KeywordInfo(plumbing, new TrafficEstimate(minStats, maxStats), null));
+    columns.add(new KeywordInfo(plumbingBroad, null, null));
+
+    try {
+      new ClicksScoreCalculator().calculate(columns, new double[columns.size()]);
+      fail("Keywords without estimate cannot be scored");
+    } catch (IllegalArgumentException e) {
+      assertEquals("The given estimate cannot be null", e.getMessage());
+    }
+  }
+
+  /**
+   * Checks that evaluations keep the keywords and estimates of the estimator.
+   */
+  @Test
+  public void checkEvaluationsKeepEstimates() throws KeywordOptimizerException {
+    final KeywordCollection estimates = new MockTrafficEstimator().estimate(keywords);
+    Evaluator evaluator = new EstimatorBasedEvaluator(new TrafficEstimator() {
+      @Override
+      public KeywordCollection estimate(KeywordCollection keywords) {
+        return estimates;
+      }
+    }, new ClicksScoreCalculator());
+
+    KeywordCollection evaluations = evaluator.evaluate(keywords);
+
+    assertEquals(estimates.size(), evaluations.size());
+    for (KeywordInfo evaluation : evaluations) {
+      KeywordInfo estimate = null;
+      for (KeywordInfo candidate : estimates) {
+        if (candidate.getKeyword() == evaluation.getKeyword()) {
+          estimate = candidate;
+        }
+      }
+      assertNotNull(estimate);
+      assertSame(estimate.getEstimate(), evaluation.getEstimate());
+      assertEquals(estimate.getEstimate().getMeanClicksPerDay(), evaluation.getScore(), 0);
+    }
+  }
+
   /**
    * A mock traffic estimator, always returning the previously setup stats.
    */
@@ -28,6 +28,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.util.List;
+import java.util.Random;
 
 /**
  * Advanced test cases for the {@link KeywordCollection} class (estimates, sorting, ...).
@@ -126,6 +127,30 @@ public class KeywordCollectionAdvancedTest {
     assertFalse(best.contains(betaBroad));
   }
   
+  /**
+   * Check that selecting the best keywords of a larger collection returns the same keywords as
+   * sorting it.
+   */
+  @Test
+  public void checkBestXLarge() {
+    Random random = new Random(42);
+    KeywordCollection large = new KeywordCollection(maxCpc);
+    for (int i = 0; i < 1000; i++) {
+      Keyword keyword = KeywordOptimizerUtil.createKeyword("keyword " + i, KeywordMatchType.EXACT);
+      large.add(new KeywordInfo(keyword, null, (double) random.nextInt(500)));
+    }
+
+    List<KeywordInfo> best = large.getBest(50).getListSortedByScore();
+    List<KeywordInfo> sortedKeywords = large.getListSortedByScore();
+
+    assertEquals(50, best.size());
+    for (int i = 0; i < 50; i++) {
+      assertEquals(sortedKeywords.get(i).getScore(), best.get(i).getScore(), 0);
+    }
+    assertEquals(1000, large.getBest(2000).size());
+    assertEquals(0, large.getBest(0).size());
+  }
+
   /**
    * Check that the average score calculation works.
    * 
@@ -134,4 +159,40 @@ public class KeywordCollectionAdvancedTest {
   public void checkAverage() {
     assertEquals(2.5D, keywords.getAverageScore(), 0.001);
   }
+
+  /**
+   * Check that the score statistics skip entries without a score and follow replaced entries.
+   */
+  @Test
+  public void checkScoreStatistics() {
+    Keyword delta = KeywordOptimizerUtil.createKeyword("delta", KeywordMatchType.EXACT);
+    keywords.add(new KeywordInfo(delta, null, null));
+
+    assertEquals(4, keywords.getScoredCount());
+    assertEquals(2.5D, keywords.getAverageScore(), 0.001);
+    assertEquals(1D, keywords.getMinScore(), 0);
+    assertEquals(4D, keywords.getMaxScore(), 0);
+    assertEquals(1.25D, keywords.getScoreVariance(), 0.001);
+
+    // Replace the best and worst keywords.
+    keywords.add(new KeywordInfo(gamma, null, 2d));
+    keywords.add(new KeywordInfo(beta, null, null));
+
+    assertEquals(3, keywords.getScoredCount());
+    assertEquals(7D / 3, keywords.getAverageScore(), 0.001);
+    assertEquals(2D, keywords.getMinScore(), 0);
+    assertEquals(3D, keywords.getMaxScore(), 0);
+  }
+
+  /**
+   * Check that the score statistics of an empty collection are not defined.
+   */
+  @Test
+  public void checkEmptyScoreStatistics() {
+    KeywordCollection empty = new KeywordCollection(maxCpc);
+
+    assertTrue(Double.isNaN(empty.getAverageScore()));
+    assertTrue(Double.isNaN(empty.getMinScore()));
+    assertTrue(Double.isNaN(empty.getScoreVariance()));
+  }
 }
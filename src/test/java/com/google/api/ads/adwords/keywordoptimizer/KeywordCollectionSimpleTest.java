@@ -15,6 +15,8 @@
 package com.google.api.ads.adwords.keywordoptimizer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
@@ -134,4 +136,20 @@ public class KeywordCollectionSimpleTest {
 
     assertEquals(3, keywords.size());
   }
+
+  /**
+   * Check that copies share the additional settings until one of them is changed.
+   */
+  @Test
+  public void checkSharedSettings() {
+    String context = EstimateCacheKey.getContext(keywords);
+    KeywordCollection copy = new KeywordCollection(keywords);
+    assertSame(keywords.getAdditionalCriteria(), copy.getAdditionalCriteria());
+    assertSame(context, EstimateCacheKey.getContext(copy));
+
+    copy.addAdditionalLocation(2276L);
+    assertEquals(3, copy.getAdditionalCriteria().size());
+    assertEquals(2, keywords.getAdditionalCriteria().size());
+    assertNotEquals(EstimateCacheKey.getContext(keywords), EstimateCacheKey.getContext(copy));
+  }
 }
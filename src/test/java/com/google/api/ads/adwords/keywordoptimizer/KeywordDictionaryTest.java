@@ -0,0 +1,158 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.api.ads.adwords.keywordoptimizer.ConcurrentKeywordCollection.MergePolicy;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Test case for the {@link KeywordDictionary} class.
+ */
+@RunWith(JUnit4.class)
+public class KeywordDictionaryTest {
+  private KeywordDictionary dictionary;
+
+  /**
+   * Setup an empty dictionary.
+   */
+  @Before
+  public void setUp() {
+    dictionary = new KeywordDictionary();
+  }
+
+  /**
+   * Check that IDs are increasing and depend on text and match type only.
+   */
+  @Test
+  public void checkIds() {
+    Keyword plumbing = new Keyword();
+    plumbing.setText("plumbing");
+    plumbing.setMatchType(KeywordMatchType.EXACT);
+
+    KeywordKey exact = dictionary.intern(plumbing);
+    KeywordKey broad = dictionary.intern("plumbing", KeywordMatchType.BROAD);
+    KeywordKey plumber = dictionary.intern("plumber", KeywordMatchType.EXACT);
+
+    assertEquals(0, exact.getId());
+    assertEquals(1, broad.getId());
+    assertEquals(2, plumber.getId());
+    assertEquals(0, dictionary.intern("plumbing", KeywordMatchType.EXACT).getId());
+  }
+
+  /**
+   * Check that finding IDs never assigns new ones.
+   */
+  @Test
+  public void checkFindId() {
+    assertEquals(-1, dictionary.findId("plumbing", KeywordMatchType.EXACT));
+
+    KeywordKey key = dictionary.intern("plumbing", KeywordMatchType.EXACT);
+    assertEquals(0, key.getId());
+    assertEquals(0, dictionary.findId("plumbing", KeywordMatchType.EXACT));
+    assertEquals(0, dictionary.findId(key.toKeyword()));
+    assertEquals(-1, dictionary.findId("plumbing", KeywordMatchType.BROAD));
+    assertEquals(-1, dictionary.findId("plumber", KeywordMatchType.EXACT));
+    assertEquals(1, dictionary.intern("plumber", KeywordMatchType.EXACT).getId());
+  }
+
+  /**
+   * Check that looking up unknown keywords in collections does not add them to the dictionary.
+   */
+  @Test
+  public void checkLookupsDoNotIntern() {
+    Keyword unknown = new Keyword();
+    unknown.setText("keyword only used for lookups " + System.nanoTime());
+    unknown.setMatchType(KeywordMatchType.EXACT);
+
+    KeywordCollection keywords = new KeywordCollection((Money) null);
+    ConcurrentKeywordCollection concurrentKeywords =
+        new ConcurrentKeywordCollection(keywords, MergePolicy.KEEP_FIRST);
+
+    assertFalse(keywords.contains(unknown));
+    assertFalse(concurrentKeywords.contains(unknown));
+    assertNull(concurrentKeywords.get(unknown));
+    assertFalse(new ColumnarKeywordCollection((Money) null).contains(unknown));
+    EstimateCacheKey.create(unknown, keywords);
+
+    assertEquals(-1, KeywordDictionary.getDefault().findId(unknown));
+  }
+
+  /**
+   * Check that keys are shared and equal to the ones of the original keywords.
+   */
+  @Test
+  public void checkIntern() {
+    KeywordKey key = dictionary.intern("plumbing", KeywordMatchType.PHRASE);
+
+    assertSame(key, dictionary.intern("plumbing", KeywordMatchType.PHRASE));
+    assertSame(key, dictionary.intern(key.toKeyword()));
+    assertEquals(new KeywordKey("plumbing", "PHRASE"), key);
+    assertNotEquals(key, dictionary.intern("plumbing", KeywordMatchType.EXACT));
+  }
+
+  /**
+   * Check that keywords are not shared between keyword infos and their keys.
+   */
+  @Test
+  public void checkNoSharedKeywords() {
+    Keyword plumbing = KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.EXACT);
+    Keyword otherPlumbing =
+        KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.EXACT);
+    KeywordInfo info = new KeywordInfo(plumbing, null, null);
+    KeywordInfo otherInfo = new KeywordInfo(otherPlumbing, null, null);
+
+    assertNotSame(plumbing, otherPlumbing);
+    assertSame(info.getKeywordKey(), otherInfo.getKeywordKey());
+    assertEquals(info.getKeywordId(), otherInfo.getKeywordId());
+    assertNotSame(plumbing, info.getKeywordKey().toKeyword());
+  }
+
+  /**
+   * Check that keywords nobody refers to are dropped from the dictionary (and get a new ID when
+   * used again).
+   */
+  @Test
+  public void checkUnusedKeywordsDropped() throws InterruptedException {
+    KeywordKey key = dictionary.intern("plumbing", KeywordMatchType.EXACT);
+    WeakReference<KeywordKey> reference = new WeakReference<KeywordKey>(key);
+    key = null;
+
+    for (int i = 0; i < 100 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+
+    assertNull(reference.get());
+    assertEquals(-1, dictionary.findId("plumbing", KeywordMatchType.EXACT));
+    assertTrue(dictionary.intern("plumbing", KeywordMatchType.EXACT).getId() > 0);
+  }
+}
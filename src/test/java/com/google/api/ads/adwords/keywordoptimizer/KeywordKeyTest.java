@@ -0,0 +1,117 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Test case for the {@link KeywordKey} class.
+ */
+@RunWith(JUnit4.class)
+public class KeywordKeyTest {
+
+  /**
+   * Check that keys are equal (with equal hashes) if and only if text and match type are equal.
+   */
+  @Test
+  public void checkEqualsAndHashCode() {
+    KeywordKey key = new KeywordKey("plumbing", "EXACT");
+    KeywordKey equal = new KeywordKey(new String("plumbing"), new String("EXACT"));
+
+    assertEquals(key, equal);
+    assertEquals(key.hashCode(), equal.hashCode());
+    assertEquals(key.getHash64(), equal.getHash64());
+
+    assertNotEquals(key, new KeywordKey("plumbing", "BROAD"));
+    assertNotEquals(key.getHash64(), new KeywordKey("plumbing", "BROAD").getHash64());
+    assertNotEquals(key, new KeywordKey("plumber", "EXACT"));
+    assertNotEquals(key, new KeywordKey("plumbing", null));
+    assertNotEquals(new KeywordKey("plumbing", null), key);
+    assertNotEquals(key, "plumbing");
+
+    KeywordKey noMatchType = new KeywordKey("plumbing", null);
+    assertEquals(noMatchType, new KeywordKey("plumbing", null));
+    assertEquals(noMatchType.hashCode(), new KeywordKey("plumbing", null).hashCode());
+  }
+
+  /**
+   * Check that the separator between text and match type keeps different splits apart.
+   */
+  @Test
+  public void checkHashSeparatesFields() {
+    assertNotEquals(new KeywordKey("ab", "c").getHash64(), new KeywordKey("a", "bc").getHash64());
+    assertNotEquals(new KeywordKey("ab", null).getHash64(), new KeywordKey("a", "b").getHash64());
+  }
+
+  /**
+   * Check that keys are ordered by text first and then by match type, with keys without match type
+   * first.
+   */
+  @Test
+  public void checkCompareTo() {
+    KeywordKey exact = new KeywordKey("plumbing", "EXACT");
+    KeywordKey broad = new KeywordKey("plumbing", "BROAD");
+    KeywordKey noMatchType = new KeywordKey("plumbing", null);
+    KeywordKey plumber = new KeywordKey("plumber", "PHRASE");
+
+    assertEquals(0, exact.compareTo(new KeywordKey("plumbing", "EXACT")));
+    assertEquals(0, noMatchType.compareTo(new KeywordKey("plumbing", null)));
+    assertTrue(broad.compareTo(exact) < 0);
+    assertTrue(exact.compareTo(broad) > 0);
+    assertTrue(noMatchType.compareTo(broad) < 0);
+    assertTrue(broad.compareTo(noMatchType) > 0);
+    assertTrue(plumber.compareTo(noMatchType) < 0);
+    assertTrue(noMatchType.compareTo(plumber) > 0);
+
+    List<KeywordKey> keys = new ArrayList<KeywordKey>(Arrays.asList(exact, plumber, broad,
+        noMatchType));
+    Collections.sort(keys);
+    assertEquals(Arrays.asList(plumber, noMatchType, broad, exact), keys);
+  }
+
+  /**
+   * Check the conversion from and to {@link Keyword} beans.
+   */
+  @Test
+  public void checkKeywordConversion() {
+    Keyword keyword = KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.PHRASE);
+    KeywordKey key = KeywordKey.of(keyword);
+    assertEquals("plumbing", key.getText());
+    assertEquals("PHRASE", key.getMatchType());
+    assertEquals(keyword, key.toKeyword());
+
+    Keyword noMatchType = new Keyword();
+    noMatchType.setText("plumbing");
+    KeywordKey noMatchTypeKey = KeywordKey.of(noMatchType);
+    assertNull(noMatchTypeKey.getMatchType());
+    assertNull(noMatchTypeKey.toKeyword().getMatchType());
+    assertEquals("plumbing", noMatchTypeKey.toString());
+  }
+}
@@ -0,0 +1,66 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * Test case for the {@link KeywordNormalizer} class.
+ */
+@RunWith(JUnit4.class)
+public class KeywordNormalizerTest {
+  /**
+   * Check that keyword texts are trimmed, whitespace is collapsed and case is ignored.
+   */
+  @Test
+  public void checkNormalize() {
+    assertEquals("plumbing repair", KeywordNormalizer.normalize("  Plumbing \t Repair "));
+    assertEquals("24/7 plumber", KeywordNormalizer.normalize("24/7 plumber"));
+  }
+
+  /**
+   * Check that invalid keyword texts are rejected.
+   */
+  @Test
+  public void checkInvalid() {
+    assertNull(KeywordNormalizer.normalize("   "));
+    assertNull(KeywordNormalizer.normalize("plumbing, heating"));
+    assertNull(KeywordNormalizer.normalize("one two three four five six seven eight nine ten x"));
+
+    StringBuilder longText = new StringBuilder();
+    for (int i = 0; i <= KeywordNormalizer.MAX_LENGTH; i++) {
+      longText.append('a');
+    }
+    assertNull(KeywordNormalizer.normalize(longText.toString()));
+  }
+
+  /**
+   * Check that duplicates and invalid keywords are removed from a collection, keeping the order.
+   */
+  @Test
+  public void checkNormalizeCollection() {
+    Set<String> texts = KeywordNormalizer.normalize(
+        Arrays.asList("Plumber", "plumbing", "PLUMBER", "plumber?"));
+    assertEquals(Arrays.asList("plumber", "plumbing"), Arrays.asList(texts.toArray()));
+  }
+}
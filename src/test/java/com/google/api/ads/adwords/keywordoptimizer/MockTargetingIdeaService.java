@@ -0,0 +1,102 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import com.google.api.ads.adwords.axis.v201509.o.AttributeType;
+import com.google.api.ads.adwords.axis.v201509.o.RelatedToQuerySearchParameter;
+import com.google.api.ads.adwords.axis.v201509.o.SearchParameter;
+import com.google.api.ads.adwords.axis.v201509.o.StringAttribute;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdea;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaPage;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaSelector;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaServiceInterface;
+import com.google.api.ads.adwords.axis.v201509.o.Type_AttributeMapEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A mock targeting idea service, returning a given number of numbered ideas. Later pages are
+ * answered faster, so that they arrive out of order. Optionally, ideas are prefixed by the first
+ * query text, so that different queries result in different ideas, and requests can be held back
+ * until a given number of them is active at the same time.
+ */
+class MockTargetingIdeaService implements TargetingIdeaServiceInterface {
+  final AtomicInteger requests = new AtomicInteger();
+  final AtomicInteger maxQueries = new AtomicInteger();
+  volatile boolean prefixQuery;
+
+  // If set, every request counts it down and waits until it reaches zero (or times out).
+  volatile CountDownLatch concurrentRequests;
+  volatile boolean concurrentRequestsTimedOut;
+
+  private final int totalNumEntries;
+
+  MockTargetingIdeaService(int totalNumEntries) {
+    this.totalNumEntries = totalNumEntries;
+  }
+
+  @Override
+  public TargetingIdeaPage get(TargetingIdeaSelector selector) {
+    requests.incrementAndGet();
+
+    String prefix = "";
+    for (SearchParameter searchParameter : selector.getSearchParameters()) {
+      if (searchParameter instanceof RelatedToQuerySearchParameter) {
+        String[] queries = ((RelatedToQuerySearchParameter) searchParameter).getQueries();
+        synchronized (maxQueries) {
+          maxQueries.set(Math.max(maxQueries.get(), queries.length));
+        }
+        prefix = prefixQuery ? queries[0] + " " : "";
+      }
+    }
+
+    int offset = selector.getPaging().getStartIndex();
+    int end = Math.min(totalNumEntries, offset + selector.getPaging().getNumberResults());
+    try {
+      CountDownLatch latch = concurrentRequests;
+      if (latch != null) {
+        latch.countDown();
+        if (!latch.await(10, TimeUnit.SECONDS)) {
+          concurrentRequestsTimedOut = true;
+        }
+      }
+      Thread.sleep((totalNumEntries - offset) / 10);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    List<TargetingIdea> ideas = new ArrayList<TargetingIdea>();
+    for (int i = offset; i < end; i++) {
+      StringAttribute text = new StringAttribute();
+      text.setValue(prefix + "idea " + i);
+      Type_AttributeMapEntry entry = new Type_AttributeMapEntry();
+      entry.setKey(AttributeType.KEYWORD_TEXT);
+      entry.setValue(text);
+
+      TargetingIdea idea = new TargetingIdea();
+      idea.setData(new Type_AttributeMapEntry[] {entry});
+      ideas.add(idea);
+    }
+
+    TargetingIdeaPage page = new TargetingIdeaPage();
+    page.setTotalNumEntries(totalNumEntries);
+    page.setEntries(ideas.toArray(new TargetingIdea[] {}));
+    return page;
+  }
+}
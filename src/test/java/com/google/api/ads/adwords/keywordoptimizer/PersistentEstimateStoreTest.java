@@ -0,0 +1,272 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.api.ads.adwords.axis.v201509.o.StatsEstimate;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Test case for the {@link PersistentEstimateStore} class.
+ */
+@RunWith(JUnit4.class)
+public class PersistentEstimateStoreTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private String basePath;
+  private KeywordCollection keywords;
+  private EstimateCacheKey plumbing;
+  private EstimateCacheKey plumbingBroad;
+  private TrafficEstimate estimate;
+
+  /**
+   * Setup some sample keys and estimates.
+   */
+  @Before
+  public void setUp() {
+    basePath = new File(folder.getRoot(), "estimates").getPath();
+
+    Money maxCpc = new Money();
+    maxCpc.setMicroAmount(1000000L); // 1 usd
+    keywords = new KeywordCollection(maxCpc);
+    keywords.addAdditionalLocation(1023191L);
+
+    plumbing = createKey("plumbing", KeywordMatchType.EXACT);
+    plumbingBroad = createKey("plumbing", KeywordMatchType.BROAD);
+
+    estimate = createEstimate(10F, 20F);
+  }
+
+  /**
+   * Check that stored estimates can be read again, with all their values.
+   */
+  @Test
+  public void checkPutAndGet() throws IOException {
+    PersistentEstimateStore store = new PersistentEstimateStore(basePath, 0);
+    store.put(plumbing, estimate);
+
+    TrafficEstimate stored = store.get(plumbing);
+    assertNotNull(stored);
+    assertEquals(10F, stored.getMin().getClicksPerDay(), 0);
+    assertEquals(20F, stored.getMax().getClicksPerDay(), 0);
+    assertEquals(15D, stored.getMean().getClicksPerDay(), 0);
+    assertEquals(500000L, stored.getMin().getAverageCpc().getMicroAmount().longValue());
+    assertNull(stored.getMin().getAveragePosition());
+
+    assertNull(store.get(plumbingBroad));
+    store.close();
+  }
+
+  /**
+   * Check that estimates survive closing and re-opening the store.
+   */
+  @Test
+  public void checkReopen() throws IOException {
+    PersistentEstimateStore store = new PersistentEstimateStore(basePath, 0);
+    store.put(plumbing, estimate);
+    store.put(plumbingBroad, createEstimate(1F, 2F));
+    store.close();
+
+    store = new PersistentEstimateStore(basePath, 0);
+    assertEquals(2, store.size());
+    assertEquals(1F, store.get(plumbingBroad).getMin().getClicksPerDay(), 0);
+    assertEquals(10F, store.get(plumbing).getMin().getClicksPerDay(), 0);
+    store.close();
+  }
+
+  /**
+   * Check that the index is rebuilt if it is missing.
+   */
+  @Test
+  public void checkRebuildIndex() throws IOException {
+    PersistentEstimateStore store = new PersistentEstimateStore(basePath, 0);
+    store.put(plumbing, estimate);
+    store.close();
+
+    new File(basePath + ".idx").delete();
+
+    store = new PersistentEstimateStore(basePath, 0);
+    assertEquals(10F, store.get(plumbing).getMin().getClicksPerDay(), 0);
+    store.close();
+  }
+
+  /**
+   * Check that an incomplete record at the end of the log is dropped.
+   */
+  @Test
+  public void checkTruncatedLog() throws IOException {
+    PersistentEstimateStore store = new PersistentEstimateStore(basePath, 0);
+    store.put(plumbing, estimate);
+    store.put(plumbingBroad, estimate);
+    store.close();
+
+    new File(basePath + ".idx").delete();
+    RandomAccessFile log = new RandomAccessFile(basePath + ".log", "rw");
+    log.setLength(log.length() - 3);
+    log.close();
+
+    store = new PersistentEstimateStore(basePath, 0);
+    assertNotNull(store.get(plumbing));
+    assertNull(store.get(plumbingBroad));
+    store.close();
+  }
+
+  /**
+   * Check that expired estimates are not returned.
+   */
+  @Test
+  public void checkExpiration() throws IOException, InterruptedException {
+    PersistentEstimateStore store = new PersistentEstimateStore(basePath, 1);
+    store.put(plumbing, estimate);
+    Thread.sleep(10);
+
+    assertNull(store.get(plumbing));
+    store.close();
+  }
+
+  /**
+   * Check that the store grows beyond its initial capacity and compaction only keeps the latest
+   * record of each key.
+   */
+  @Test
+  public void checkGrowAndCompact() throws IOException {
+    PersistentEstimateStore store = new PersistentEstimateStore(basePath, 0);
+    for (int i = 0; i < 5000; i++) {
+      store.put(createKey("keyword " + i, KeywordMatchType.EXACT), estimate);
+    }
+    store.put(plumbing, estimate);
+    store.put(plumbing, createEstimate(30F, 40F));
+
+    assertEquals(5001, store.size());
+    assertEquals(5002, store.getRecordCount());
+
+    store.compact();
+    assertEquals(5001, store.size());
+    assertEquals(5001, store.getRecordCount());
+    assertEquals(30F, store.get(plumbing).getMin().getClicksPerDay(), 0);
+    assertEquals(10F,
+        store.get(createKey("keyword 4999", KeywordMatchType.EXACT)).getMin().getClicksPerDay(), 0);
+    store.close();
+  }
+
+  /**
+   * Check that the log is restored from the backup of an interrupted compaction.
+   */
+  @Test
+  public void checkRecoverFromBackup() throws IOException {
+    PersistentEstimateStore store = new PersistentEstimateStore(basePath, 0);
+    store.put(plumbing, estimate);
+    store.close();
+
+    // Simulate a compaction interrupted right after moving the log to its backup.
+    assertTrue(new File(basePath + ".log").renameTo(new File(basePath + ".bak")));
+
+    store = new PersistentEstimateStore(basePath, 0);
+    assertEquals(10F, store.get(plumbing).getMin().getClicksPerDay(), 0);
+    store.close();
+    assertFalse(new File(basePath + ".bak").exists());
+  }
+
+  /**
+   * Check that an obsolete backup is dropped if the compacted log is in place already.
+   */
+  @Test
+  public void checkDropObsoleteBackup() throws IOException {
+    PersistentEstimateStore store = new PersistentEstimateStore(basePath, 0);
+    store.put(plumbing, estimate);
+    store.put(plumbing, createEstimate(30F, 40F));
+    store.compact();
+    store.close();
+
+    // Simulate a compaction interrupted right before deleting the backup of the old log.
+    assertTrue(new File(basePath + ".bak").createNewFile());
+
+    store = new PersistentEstimateStore(basePath, 0);
+    assertEquals(1, store.getRecordCount());
+    assertEquals(30F, store.get(plumbing).getMin().getClicksPerDay(), 0);
+    store.close();
+    assertFalse(new File(basePath + ".bak").exists());
+  }
+
+  /**
+   * Check that a store cannot be opened twice at the same time.
+   */
+  @Test
+  public void checkLock() throws IOException {
+    PersistentEstimateStore store = new PersistentEstimateStore(basePath, 0);
+    try {
+      new PersistentEstimateStore(basePath, 0);
+      fail("Expected the store to be locked");
+    } catch (IOException e) {
+      // Expected.
+    }
+    store.close();
+
+    store = new PersistentEstimateStore(basePath, 0);
+    store.close();
+  }
+
+  /**
+   * Check that keys without a match type can be stored.
+   */
+  @Test
+  public void checkMissingMatchType() throws IOException {
+    PersistentEstimateStore store = new PersistentEstimateStore(basePath, 0);
+    EstimateCacheKey noMatchType = createKey("plumbing", null);
+    store.put(noMatchType, estimate);
+
+    assertEquals(10F, store.get(noMatchType).getMin().getClicksPerDay(), 0);
+    assertNull(store.get(plumbing));
+    store.close();
+  }
+
+  private EstimateCacheKey createKey(String text, KeywordMatchType matchType) {
+    return EstimateCacheKey.create(KeywordOptimizerUtil.createKeyword(text, matchType), keywords);
+  }
+
+  private static TrafficEstimate createEstimate(float minClicks, float maxClicks) {
+    Money cpc = new Money();
+    cpc.setMicroAmount(500000L);
+
+    StatsEstimate min = new StatsEstimate();
+    min.setClicksPerDay(minClicks);
+    min.setAverageCpc(cpc);
+
+    StatsEstimate max = new StatsEstimate();
+    max.setClicksPerDay(maxClicks);
+    max.setAverageCpc(cpc);
+
+    return new TrafficEstimate(min, max);
+  }
+}
@@ -0,0 +1,96 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.api.ads.adwords.keywordoptimizer.SeedFileReader.LineHandler;
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test case for the {@link SeedFileReader} class.
+ */
+@RunWith(JUnit4.class)
+public class SeedFileReaderTest {
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Check that comments, empty lines and duplicates are skipped and line endings are removed.
+   */
+  @Test
+  public void checkSkippedLines() throws IOException, KeywordOptimizerException {
+    File file = createFile("# comment\nplumbing\r\n\n  plumber \nplumbing\n# plumbing\nheating");
+
+    SeedFileReader reader = new SeedFileReader(file.getPath());
+    List<String> lines = read(reader);
+
+    assertEquals(Arrays.asList("plumbing", "plumber", "heating"), lines);
+    assertEquals(7, reader.getLineCount());
+    assertEquals(2, reader.getCommentCount());
+    assertEquals(1, reader.getDuplicateCount());
+  }
+
+  /**
+   * Check that lines spanning several mapped windows are read completely, including multi-byte
+   * characters.
+   */
+  @Test
+  public void checkSmallWindows() throws IOException, KeywordOptimizerException {
+    File file = createFile("plumbing repair\nklempner münchen\nplumber\n");
+
+    List<String> lines = read(new SeedFileReader(file.getPath(), 3));
+
+    assertEquals(Arrays.asList("plumbing repair", "klempner münchen", "plumber"), lines);
+  }
+
+  /**
+   * Check that a missing file results in an exception.
+   */
+  @Test(expected = KeywordOptimizerException.class)
+  public void checkMissingFile() throws KeywordOptimizerException {
+    read(new SeedFileReader(new File(folder.getRoot(), "missing").getPath()));
+  }
+
+  private File createFile(String content) throws IOException {
+    File file = folder.newFile();
+    Files.write(content, file, Charsets.UTF_8);
+    return file;
+  }
+
+  private static List<String> read(SeedFileReader reader) throws KeywordOptimizerException {
+    final List<String> lines = new ArrayList<String>();
+    reader.read(new LineHandler() {
+      @Override
+      public void handle(String line) {
+        lines.add(line);
+      }
+    });
+    return lines;
+  }
+}
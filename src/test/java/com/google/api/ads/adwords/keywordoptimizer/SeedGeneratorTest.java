@@ -15,6 +15,7 @@
 package com.google.api.ads.adwords.keywordoptimizer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
 
@@ -22,8 +23,11 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
+import java.util.Arrays;
+
 /**
- * Test case for the {@link SimpleSeedGenerator} class.
+ * Test case for the {@link SimpleSeedGenerator}, {@link TisSearchTermsSeedGenerator} and
+ * {@link CompositeSeedGenerator} classes.
  */
 @RunWith(JUnit4.class)
 public class SeedGeneratorTest {
@@ -46,4 +50,59 @@ public class SeedGeneratorTest {
     assertEquals(2, keywords.getContainingKeywordTexts().size());
     assertEquals(3, keywords.getContainingMatchTypes().size());
   }
+
+  /**
+   * Check that case and whitespace variants are merged and invalid keywords are dropped.
+   */
+  @Test
+  public void checkNormalization() throws KeywordOptimizerException {
+    SimpleSeedGenerator seedGenerator = new SimpleSeedGenerator(
+        "plumbing", " Plumbing ", "plumbing  repair", "plumbing repair", "plumbing!", "");
+    seedGenerator.addMatchType(KeywordMatchType.EXACT);
+
+    KeywordCollection keywords = seedGenerator.generate();
+
+    assertEquals(2, keywords.size());
+    assertTrue(keywords.getContainingKeywordTexts().contains("plumbing repair"));
+  }
+
+  /**
+   * Check that search terms are queried in groups and the results are merged without duplicates.
+   */
+  @Test
+  public void checkGroupedSearchTerms() throws KeywordOptimizerException {
+    MockTargetingIdeaService service = new MockTargetingIdeaService(250);
+    TisSearchTermsSeedGenerator seedGenerator =
+        new TisSearchTermsSeedGenerator(service, null, 2, 4);
+    for (int i = 0; i < 5; i++) {
+      seedGenerator.addSearchTerm("plumbing " + i);
+    }
+    seedGenerator.addMatchType(KeywordMatchType.EXACT);
+
+    KeywordCollection keywords = seedGenerator.generate();
+
+    // 3 groups of (at most) 2 search terms, each with 3 pages of the same ideas.
+    assertEquals(9, service.requests.get());
+    assertEquals(2, service.maxQueries.get());
+    assertEquals(250, keywords.size());
+  }
+
+  /**
+   * Check that the keywords of several seed generators are merged without duplicates.
+   */
+  @Test
+  public void checkComposite() throws KeywordOptimizerException {
+    CompositeSeedGenerator seedGenerator = new CompositeSeedGenerator(Arrays.asList(
+        new SimpleSeedGenerator("plumbing", "plumber"),
+        new SimpleSeedGenerator("plumber", "plumbing repair")));
+    seedGenerator.addMatchType(KeywordMatchType.EXACT);
+    seedGenerator.addMatchType(KeywordMatchType.PHRASE);
+    seedGenerator.addAdditionalLocation(1023191L);
+
+    KeywordCollection keywords = seedGenerator.generate();
+
+    assertEquals(6, keywords.size());
+    assertEquals(3, keywords.getContainingKeywordTexts().size());
+    assertEquals(1, keywords.getAdditionalCriteria().size());
+  }
 }
@@ -0,0 +1,194 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.axis.v201509.o.AttributeType;
+import com.google.api.ads.adwords.axis.v201509.o.StringAttribute;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdea;
+import com.google.api.ads.adwords.axis.v201509.o.TargetingIdeaPage;
+import com.google.api.ads.adwords.axis.v201509.o.Type_AttributeMapEntry;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test case for the {@link TargetingIdeaIterator} class.
+ */
+@RunWith(JUnit4.class)
+public class TargetingIdeaIteratorTest {
+  private static final long TIMEOUT_SECONDS = 10;
+
+  private ListeningExecutorService executor;
+
+  @After
+  public void tearDown() {
+    if (executor != null) {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Check that all ideas are returned in order, fetching one page after the other.
+   */
+  @Test
+  public void checkSequential() throws KeywordOptimizerException {
+    CountingPageLoader loader = new CountingPageLoader(25);
+    TargetingIdeaIterator ideas = new TargetingIdeaIterator(loader, 10, 0);
+
+    assertEquals(createIdeaTexts(0, 25), readAll(ideas));
+    assertEquals(Arrays.asList(0, 10, 20), new ArrayList<Integer>(loader.offsets));
+  }
+
+  /**
+   * Check that pages beyond the limit are never loaded, even when fetching pages ahead of time.
+   */
+  @Test
+  public void checkLimit() throws KeywordOptimizerException {
+    executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+    CountingPageLoader loader = new CountingPageLoader(100);
+    TargetingIdeaIterator ideas = new TargetingIdeaIterator(loader, 10, 15, executor, 4);
+
+    assertEquals(createIdeaTexts(0, 15), readAll(ideas));
+    assertEquals(Arrays.asList(0, 10), new ArrayList<Integer>(loader.offsets));
+  }
+
+  /**
+   * Check that ideas are returned in the order of the pages when fetching pages concurrently,
+   * although later pages are loaded faster.
+   */
+  @Test
+  public void checkPrefetchOrder() throws KeywordOptimizerException {
+    executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(4));
+    CountingPageLoader loader = new CountingPageLoader(50);
+    loader.slowFirstPages = true;
+    TargetingIdeaIterator ideas = new TargetingIdeaIterator(loader, 5, 0, executor, 4);
+
+    assertEquals(createIdeaTexts(0, 50), readAll(ideas));
+    assertEquals(10, loader.offsets.size());
+  }
+
+  /**
+   * Check that closing the iterator cancels pages fetched ahead of time that have not started
+   * loading yet.
+   */
+  @Test
+  public void checkClose() throws KeywordOptimizerException, InterruptedException {
+    executor = MoreExecutors.listeningDecorator(Executors.newSingleThreadExecutor());
+    CountingPageLoader loader = new CountingPageLoader(100);
+    loader.blockFrom = 20;
+    TargetingIdeaIterator ideas = new TargetingIdeaIterator(loader, 10, 0, executor, 3);
+
+    // Reading the first idea of the second page requests pages 2 to 4, the third one blocks the
+    // single thread, so the fourth one is still queued.
+    for (int i = 0; i < 11; i++) {
+      assertTrue(ideas.hasNext());
+      ideas.next();
+    }
+    assertTrue(loader.blocked.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    ideas.close();
+    loader.release.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+    assertEquals(Arrays.asList(0, 10, 20), new ArrayList<Integer>(loader.offsets));
+  }
+
+  private static List<String> readAll(TargetingIdeaIterator ideas)
+      throws KeywordOptimizerException {
+    List<String> texts = new ArrayList<String>();
+    while (ideas.hasNext()) {
+      texts.add(ideas.next());
+    }
+    return texts;
+  }
+
+  private static List<String> createIdeaTexts(int from, int to) {
+    List<String> texts = new ArrayList<String>();
+    for (int i = from; i < to; i++) {
+      texts.add("idea " + i);
+    }
+    return texts;
+  }
+
+  /**
+   * Page loader remembering the offsets of all pages it has loaded.
+   */
+  private static class CountingPageLoader implements TargetingIdeaIterator.PageLoader {
+    private final int totalNumEntries;
+    private final Set<Integer> offsets = new ConcurrentSkipListSet<Integer>();
+    private final CountDownLatch blocked = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    // Pages starting at or after this offset block until released (-1 for none).
+    private volatile int blockFrom = -1;
+    private volatile boolean slowFirstPages;
+
+    private CountingPageLoader(int totalNumEntries) {
+      this.totalNumEntries = totalNumEntries;
+    }
+
+    @Override
+    public TargetingIdeaPage load(int offset, int pageSize) throws KeywordOptimizerException {
+      offsets.add(offset);
+
+      try {
+        if (blockFrom >= 0 && offset >= blockFrom) {
+          blocked.countDown();
+          release.await();
+        } else if (slowFirstPages) {
+          Thread.sleep((totalNumEntries - offset) / 5);
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new KeywordOptimizerException("Interrupted", e);
+      }
+
+      List<TargetingIdea> ideas = new ArrayList<TargetingIdea>();
+      for (int i = offset; i < Math.min(totalNumEntries, offset + pageSize); i++) {
+        StringAttribute text = new StringAttribute();
+        text.setValue("idea " + i);
+        Type_AttributeMapEntry entry = new Type_AttributeMapEntry();
+        entry.setKey(AttributeType.KEYWORD_TEXT);
+        entry.setValue(text);
+
+        TargetingIdea idea = new TargetingIdea();
+        idea.setData(new Type_AttributeMapEntry[] {entry});
+        ideas.add(idea);
+      }
+
+      TargetingIdeaPage page = new TargetingIdeaPage();
+      page.setTotalNumEntries(totalNumEntries);
+      page.setEntries(ideas.toArray(new TargetingIdea[] {}));
+      return page;
+    }
+  }
+}
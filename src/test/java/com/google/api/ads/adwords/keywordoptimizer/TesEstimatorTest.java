@@ -0,0 +1,254 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.api.ads.adwords.axis.v201509.cm.ApiError;
+import com.google.api.ads.adwords.axis.v201509.cm.ApiException;
+import com.google.api.ads.adwords.axis.v201509.cm.CriterionError;
+import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+import com.google.api.ads.adwords.axis.v201509.cm.SizeLimitError;
+import com.google.api.ads.adwords.axis.v201509.o.AdGroupEstimate;
+import com.google.api.ads.adwords.axis.v201509.o.CampaignEstimate;
+import com.google.api.ads.adwords.axis.v201509.o.KeywordEstimate;
+import com.google.api.ads.adwords.axis.v201509.o.KeywordEstimateRequest;
+import com.google.api.ads.adwords.axis.v201509.o.StatsEstimate;
+import com.google.api.ads.adwords.axis.v201509.o.TrafficEstimatorResult;
+import com.google.api.ads.adwords.axis.v201509.o.TrafficEstimatorSelector;
+import com.google.api.ads.adwords.axis.v201509.o.TrafficEstimatorServiceInterface;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test case for the {@link TesEstimator} class, using a mock traffic estimator service.
+ */
+@RunWith(JUnit4.class)
+public class TesEstimatorTest {
+  private KeywordCollection keywords;
+  private MockTrafficEstimatorService service;
+
+  /**
+   * Setup some sample keywords.
+   */
+  @Before
+  public void setUp() {
+    Money maxCpc = new Money();
+    maxCpc.setMicroAmount(1000000L); // 1 usd
+
+    keywords = new KeywordCollection(maxCpc);
+    for (int i = 0; i < 25; i++) {
+      Keyword keyword = KeywordOptimizerUtil.createKeyword("keyword " + i, KeywordMatchType.EXACT);
+      keywords.add(new KeywordInfo(keyword, null, null));
+    }
+
+    service = new MockTrafficEstimatorService();
+  }
+
+  /**
+   * Check that a small collection is sent in a single request.
+   */
+  @Test
+  public void checkSingleBatch() throws KeywordOptimizerException {
+    TesEstimator estimator = new TesEstimator(service, 100, 4);
+    KeywordCollection estimates = estimator.estimate(keywords);
+
+    assertEquals(25, estimates.size());
+    assertEquals(1, service.requests.get());
+    assertCorrectEstimates(estimates);
+  }
+
+  /**
+   * Check that a large collection is split into batches and all estimates are mapped to the right
+   * keywords.
+   */
+  @Test
+  public void checkMultipleBatches() throws KeywordOptimizerException {
+    TesEstimator estimator = new TesEstimator(service, 10, 4);
+    KeywordCollection estimates = estimator.estimate(keywords);
+
+    assertEquals(25, estimates.size());
+    assertEquals(3, service.requests.get());
+    assertTrue(service.maxRequestSize.get() <= 10);
+    assertCorrectEstimates(estimates);
+  }
+
+  /**
+   * Check that asynchronous estimation returns the same estimates as the blocking one.
+   */
+  @Test
+  public void checkEstimateAsync() throws KeywordOptimizerException {
+    TesEstimator estimator = new TesEstimator(service, 10, 4);
+    KeywordCollection estimates = KeywordOptimizerUtil.waitFor(estimator.estimateAsync(keywords));
+
+    assertEquals(25, estimates.size());
+    assertEquals(3, service.requests.get());
+    assertCorrectEstimates(estimates);
+  }
+
+  /**
+   * Check that batches rejected for being too large are retried in smaller batches and that the
+   * batch size is decreased.
+   */
+  @Test
+  public void checkSizeLimitRetry() throws KeywordOptimizerException {
+    service.maxAcceptedSize = 5;
+    TesEstimator estimator = new TesEstimator(service, new AdaptiveBatchSizer(20, 2, 20, 10000), 1);
+    KeywordCollection estimates = estimator.estimate(keywords);
+
+    assertEquals(25, estimates.size());
+    assertTrue(estimator.getBatchSize() < 20);
+    assertCorrectEstimates(estimates);
+  }
+
+  /**
+   * Check that a batch failing because of a single keyword (as told by the field path of the
+   * error) is sent again once without it, that estimates for all other keywords are returned and
+   * that the keyword is not sent again.
+   */
+  @Test
+  public void checkInvalidKeyword() throws KeywordOptimizerException {
+    service.invalidKeywordText = "keyword 7";
+    TesEstimator estimator = new TesEstimator(service, 10, 1);
+    KeywordCollection estimates = estimator.estimate(keywords);
+
+    assertEquals(24, estimates.size());
+    assertEquals(4, service.requests.get());
+    assertEquals(1, estimator.getUnestimableKeywords().size());
+    assertEquals("keyword 7", estimator.getUnestimableKeywords().iterator().next().getText());
+    assertCorrectEstimates(estimates);
+
+    estimates = estimator.estimate(keywords);
+    assertEquals(24, estimates.size());
+    assertEquals(4 + 3, service.requests.get());
+  }
+
+  /**
+   * Check that errors not pointing to a single keyword (e.g. caused by an invalid location) fail
+   * the estimation right away instead of marking keywords as unestimable.
+   */
+  @Test
+  public void checkRequestError() {
+    service.requestErrorFieldPath = "selector.campaignEstimateRequests[0].criteria[1]";
+    TesEstimator estimator = new TesEstimator(service, 10, 1);
+
+    try {
+      estimator.estimate(keywords);
+      fail("The estimation should fail");
+    } catch (KeywordOptimizerException e) {
+      // One request per batch, none of them is retried.
+      assertEquals(3, service.requests.get());
+      assertTrue(estimator.getUnestimableKeywords().isEmpty());
+    }
+  }
+
+  /**
+   * Check that batches that are too large, but already at the minimum batch size, fail the
+   * estimation instead of being split any further.
+   */
+  @Test
+  public void checkSizeLimitAtMinimum() {
+    service.maxAcceptedSize = 5;
+    TesEstimator estimator = new TesEstimator(service, 10, 1);
+
+    try {
+      estimator.estimate(keywords);
+      fail("The estimation should fail");
+    } catch (KeywordOptimizerException e) {
+      // One request per batch, none of them is retried.
+      assertEquals(3, service.requests.get());
+      assertTrue(estimator.getUnestimableKeywords().isEmpty());
+    }
+  }
+
+  /**
+   * Checks that every keyword got the estimate the mock service created for its text.
+   */
+  private static void assertCorrectEstimates(KeywordCollection estimates) {
+    for (KeywordInfo estimate : estimates) {
+      assertTrue(estimate.hasEstimate());
+      assertEquals(estimate.getKeyword().getText().length(),
+          estimate.getEstimate().getMin().getClicksPerDay(), 0);
+    }
+  }
+
+  /**
+   * A mock traffic estimator service, returning the length of the keyword text as clicks.
+   */
+  private static class MockTrafficEstimatorService implements TrafficEstimatorServiceInterface {
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger maxRequestSize = new AtomicInteger();
+    private int maxAcceptedSize = Integer.MAX_VALUE;
+    private String invalidKeywordText;
+    private String requestErrorFieldPath;
+
+    @Override
+    public TrafficEstimatorResult get(TrafficEstimatorSelector selector) throws ApiException {
+      requests.incrementAndGet();
+
+      KeywordEstimateRequest[] keywordRequests = selector.getCampaignEstimateRequests()[0]
+          .getAdGroupEstimateRequests()[0].getKeywordEstimateRequests();
+      if (keywordRequests.length > maxAcceptedSize) {
+        throw createException(new SizeLimitError(), "selector.campaignEstimateRequests");
+      }
+      if (requestErrorFieldPath != null) {
+        throw createException(new CriterionError(), requestErrorFieldPath);
+      }
+      for (int i = 0; i < keywordRequests.length; i++) {
+        if (keywordRequests[i].getKeyword().getText().equals(invalidKeywordText)) {
+          throw createException(new CriterionError(), "selector.campaignEstimateRequests[0]"
+              + ".adGroupEstimateRequests[0].keywordEstimateRequests[" + i + "].keyword.text");
+        }
+      }
+      synchronized (maxRequestSize) {
+        maxRequestSize.set(Math.max(maxRequestSize.get(), keywordRequests.length));
+      }
+
+      KeywordEstimate[] keywordEstimates = new KeywordEstimate[keywordRequests.length];
+      for (int i = 0; i < keywordRequests.length; i++) {
+        StatsEstimate stats = new StatsEstimate();
+        stats.setClicksPerDay((float) keywordRequests[i].getKeyword().getText().length());
+
+        keywordEstimates[i] = new KeywordEstimate();
+        keywordEstimates[i].setMin(stats);
+        keywordEstimates[i].setMax(stats);
+      }
+
+      AdGroupEstimate adGroupEstimate = new AdGroupEstimate();
+      adGroupEstimate.setKeywordEstimates(keywordEstimates);
+      CampaignEstimate campaignEstimate = new CampaignEstimate();
+      campaignEstimate.setAdGroupEstimates(new AdGroupEstimate[] {adGroupEstimate});
+      TrafficEstimatorResult result = new TrafficEstimatorResult();
+      result.setCampaignEstimates(new CampaignEstimate[] {campaignEstimate});
+      return result;
+    }
+
+    private static ApiException createException(ApiError error, String fieldPath) {
+      error.setFieldPath(fieldPath);
+      ApiException e = new ApiException();
+      e.setErrors(new ApiError[] {error});
+      return e;
+    }
+  }
+}
@@ -0,0 +1,170 @@
+// Copyright 2016 Google Inc. All Rights Reserved.
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+// http://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.api.ads.adwords.keywordoptimizer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.ads.adwords.axis.v201509.cm.KeywordMatchType;
+import com.google.api.ads.adwords.axis.v201509.cm.Money;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Test case for the {@link TisAlternativesFinder} class, using a mock targeting idea service.
+ */
+@RunWith(JUnit4.class)
+public class TisAlternativesFinderTest {
+  private KeywordCollection keywords;
+  private MockTargetingIdeaService service;
+
+  /**
+   * Setup a sample keyword.
+   */
+  @Before
+  public void setUp() {
+    Money maxCpc = new Money();
+    maxCpc.setMicroAmount(1000000L); // 1 usd
+
+    keywords = new KeywordCollection(maxCpc);
+    keywords.add(new KeywordInfo(
+        KeywordOptimizerUtil.createKeyword("plumbing", KeywordMatchType.EXACT), null, null));
+
+    service = new MockTargetingIdeaService(250);
+  }
+
+  /**
+   * Check that all pages are retrieved and their ideas are kept in order.
+   */
+  @Test
+  public void checkAllPagesInOrder() throws KeywordOptimizerException {
+    TisAlternativesFinder finder = new TisAlternativesFinder(service, 4, 0);
+    List<String> keywordTexts = new ArrayList<String>(finder.getKeywordTexts(keywords));
+
+    assertEquals(3, service.requests.get());
+    assertEquals(250, keywordTexts.size());
+    for (int i = 0; i < keywordTexts.size(); i++) {
+      assertEquals("idea " + i, keywordTexts.get(i));
+    }
+  }
+
+  /**
+   * Check that pages beyond the maximum number of ideas are not retrieved.
+   */
+  @Test
+  public void checkMaxIdeas() throws KeywordOptimizerException {
+    service = new MockTargetingIdeaService(1000);
+    TisAlternativesFinder finder = new TisAlternativesFinder(service, 4, 150);
+    List<String> keywordTexts = new ArrayList<String>(finder.getKeywordTexts(keywords));
+
+    assertEquals(2, service.requests.get());
+    assertEquals(150, keywordTexts.size());
+    assertEquals("idea 149", keywordTexts.get(149));
+  }
+
+  /**
+   * Check that the ideas are turned into keywords with the match types of the given keywords.
+   */
+  @Test
+  public void checkFind() throws KeywordOptimizerException {
+    TisAlternativesFinder finder = new TisAlternativesFinder(service, 1, 0);
+    KeywordCollection alternatives = finder.find(keywords);
+
+    assertEquals(250, alternatives.size());
+    assertEquals(1, alternatives.getContainingMatchTypes().size());
+  }
+
+  /**
+   * Check that ideas are retrieved for every keyword text separately and only once.
+   */
+  @Test
+  public void checkCachedQueries() throws KeywordOptimizerException {
+    TisAlternativesFinder finder = new TisAlternativesFinder(service, 1, 0);
+    finder.find(keywords);
+    assertEquals(3, service.requests.get());
+
+    keywords.add(new KeywordInfo(
+        KeywordOptimizerUtil.createKeyword("heating", KeywordMatchType.EXACT), null, null));
+    KeywordCollection alternatives = finder.find(keywords);
+
+    // Only the new keyword text is sent, the ideas of both texts are merged.
+    assertEquals(6, service.requests.get());
+    assertEquals(250, alternatives.size());
+
+    finder.find(keywords);
+    assertEquals(6, service.requests.get());
+  }
+
+  /**
+   * Check that ideas for different keyword texts are retrieved concurrently (the first pages of
+   * all four texts are only answered once all of them have been requested) and all merged.
+   */
+  @Test
+  public void checkConcurrentQueries() throws KeywordOptimizerException {
+    service.prefixQuery = true;
+    service.concurrentRequests = new CountDownLatch(4);
+    addKeywords("heating", "roofing", "tiling");
+
+    TisAlternativesFinder finder = new TisAlternativesFinder(service, 4, 0);
+    KeywordCollection alternatives = finder.find(keywords);
+
+    assertEquals(12, service.requests.get());
+    assertFalse(service.concurrentRequestsTimedOut);
+    assertEquals(1000, alternatives.size());
+
+    List<KeywordInfo> sorted = alternatives.getListSortedByKeyword();
+    assertEquals("heating idea 0", sorted.get(0).getKeyword().getText());
+    assertEquals("tiling idea 99", sorted.get(999).getKeyword().getText());
+  }
+
+  /**
+   * Check that the maximum number of ideas applies to every keyword text as well as to the merged
+   * ideas, which are taken from all keyword texts in turn.
+   */
+  @Test
+  public void checkMaxIdeasMerged() throws KeywordOptimizerException {
+    service = new MockTargetingIdeaService(1000);
+    service.prefixQuery = true;
+    addKeywords("heating");
+
+    TisAlternativesFinder finder = new TisAlternativesFinder(service, 4, 150);
+    KeywordCollection alternatives = finder.find(keywords);
+
+    // Two pages per keyword text, the first 75 ideas of every text are used.
+    assertEquals(4, service.requests.get());
+    assertEquals(150, alternatives.size());
+    assertTrue(alternatives.contains(
+        KeywordOptimizerUtil.createKeyword("heating idea 74", KeywordMatchType.EXACT)));
+    assertTrue(alternatives.contains(
+        KeywordOptimizerUtil.createKeyword("plumbing idea 74", KeywordMatchType.EXACT)));
+    assertFalse(alternatives.contains(
+        KeywordOptimizerUtil.createKeyword("heating idea 75", KeywordMatchType.EXACT)));
+  }
+
+  private void addKeywords(String... texts) {
+    for (String text : texts) {
+      keywords.add(new KeywordInfo(
+          KeywordOptimizerUtil.createKeyword(text, KeywordMatchType.EXACT), null, null));
+    }
+  }
+}
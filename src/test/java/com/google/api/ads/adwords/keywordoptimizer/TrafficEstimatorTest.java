@@ -15,6 +15,9 @@
 package com.google.api.ads.adwords.keywordoptimizer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import com.google.api.ads.adwords.axis.v201509.cm.Keyword;
@@ -133,6 +136,61 @@ public class TrafficEstimatorTest {
     }
   }
 
+  /**
+   * Check that the compact statistics keep all values, mark missing ones and derive the mean the
+   * same way as {@link KeywordOptimizerUtil#calculateMean(StatsEstimate, StatsEstimate)}.
+   */
+  @Test
+  public void checkCompactValues() {
+    Money minAverageCpc = new Money();
+    minAverageCpc.setMicroAmount(500001L);
+    Money maxAverageCpc = new Money();
+    maxAverageCpc.setMicroAmount(1000000L);
+    minStats.setAverageCpc(minAverageCpc);
+    maxStats.setAverageCpc(maxAverageCpc);
+    minStats.setClickThroughRate(0.1);
+
+    TrafficEstimate estimate = new TrafficEstimate(minStats, maxStats);
+    StatsEstimate mean = KeywordOptimizerUtil.calculateMean(minStats, maxStats);
+
+    assertEquals(15F, estimate.getMeanClicksPerDay(), 0);
+    assertEquals(1500F, estimate.getMeanImpressionsPerDay(), 0);
+    assertEquals(mean.getAverageCpc().getMicroAmount(),
+        estimate.getMean().getAverageCpc().getMicroAmount());
+    assertEquals(500001L, estimate.getMinStats().getAverageCpc());
+    assertEquals(0.1, estimate.getMin().getClickThroughRate(), 0);
+
+    // Values missing on either side are missing in the mean.
+    assertTrue(Double.isNaN(estimate.getMeanStats().getClickThroughRate()));
+    assertNull(estimate.getMean().getClickThroughRate());
+    assertNull(estimate.getMax().getTotalCost());
+    assertEquals(CompactStatsEstimate.NO_MONEY, estimate.getMaxStats().getTotalCost());
+
+    assertTrue(estimate.hasData());
+    assertFalse(new TrafficEstimate(new StatsEstimate(), new StatsEstimate()).hasData());
+  }
+
+  /**
+   * Check that the statistics beans are created once only and that the deprecated constructor
+   * ignores the given mean.
+   */
+  @Test
+  @SuppressWarnings("deprecation")
+  public void checkStatsEstimatesMemoized() {
+    TrafficEstimate estimate = new TrafficEstimate(minStats, maxStats);
+
+    assertSame(estimate.getMin(), estimate.getMin());
+    assertSame(estimate.getMean(), estimate.getMean());
+    assertSame(estimate.getMax(), estimate.getMax());
+
+    StatsEstimate otherMean = new StatsEstimate();
+    otherMean.setClicksPerDay(99F);
+    estimate = new TrafficEstimate(minStats, otherMean, maxStats);
+    assertEquals(15F, estimate.getMean().getClicksPerDay(), 0);
+    assertEquals(10F, estimate.getMin().getClicksPerDay(), 0);
+    assertEquals(20F, estimate.getMax().getClicksPerDay(), 0);
+  }
+
   /**
    * A mock traffic estimator, always returning the previously setup stats.
    */